@@ -0,0 +1,348 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Shortest Path First from every node of a graph, giving next-hop and
+ * distance tables for all pairs of nodes.
+ * <p>
+ * The graph is first frozen into a {@link CsrGraph} snapshot, and nodes are
+ * identified by their ids in that snapshot, see {@link #graph()}. A
+ * Dijkstra search is then run from every node, in parallel over a
+ * {@link ForkJoinPool}. Each worker thread re-uses a single workspace of
+ * primitive arrays and an indexed heap, so the searches allocate nothing
+ * beyond the result rows.
+ * <p>
+ * Results are kept as one row of node ids per root, for the next-hop
+ * table, and optionally one row of costs per root, for the distance table.
+ * Each table takes 4 * N<sup>2</sup> bytes, for a graph of N nodes, so
+ * the distance table should be disabled, with {@link #distances(boolean)},
+ * where it is not needed on large graphs.
+ * <p>
+ * Where there are multiple, equal-cost paths to a node the next-hop with
+ * the lowest id is chosen, so that results are deterministic. This may
+ * differ from the next-hop chosen by {@link ShortestPathFirst#nexthop}.
+ *
+ * @param N The type of the Nodes in the graph
+ * @param E The type of the Edges in the graph
+ */
+public class AllPairsShortestPathFirst<N,E> {
+  /* Number of roots each task handles, before splitting */
+  private static final int THRESHOLD = 16;
+  
+  private final Graph<N,E> g;
+  private ForkJoinPool pool = ForkJoinPool.commonPool ();
+  private boolean keep_distances = true;
+  
+  private CsrGraph<N,E> csr;
+  private int [][] nexthops;
+  private int [][] distances;
+  
+  /* Per worker search state */
+  private static final class workspace {
+    final int [] dist;
+    final int [] nexthop;
+    final IntHeap heap;
+    
+    workspace (int n) {
+      dist = new int [n];
+      nexthop = new int [n];
+      heap = new IntHeap (n);
+    }
+  }
+  
+  public AllPairsShortestPathFirst (Graph<N,E> g) {
+    if (g == null)
+      throw new IllegalArgumentException ("graph must not be null");
+    this.g = g;
+  }
+  
+  /**
+   * @param pool The pool to run the searches in. By default, the common
+   *             pool is used.
+   * @return This instance
+   */
+  public AllPairsShortestPathFirst<N,E> pool (ForkJoinPool pool) {
+    if (pool == null)
+      throw new IllegalArgumentException ("pool must not be null");
+    this.pool = pool;
+    return this;
+  }
+  
+  /**
+   * @param keep Whether to keep the distance table. Defaults to true.
+   * @return This instance
+   */
+  public AllPairsShortestPathFirst<N,E> distances (boolean keep) {
+    this.keep_distances = keep;
+    return this;
+  }
+  
+  /**
+   * Callback for {@link AllPairsShortestPathFirst#run(row_handler)}.
+   */
+  @FunctionalInterface
+  public interface row_handler {
+    /**
+     * Called with the results of the SPF from a root, from the worker 
+     * thread which ran it. Calls for different roots may be concurrent.
+     * The arrays belong to the worker, and are only valid for the
+     * duration of the call.
+     * 
+     * @param root The id of the root node.
+     * @param dist The cost from the root to each node, by id, or
+     *             Integer.MAX_VALUE where unreachable.
+     * @param nexthop The id of the next-hop from the root to each node,
+     *                by id, or -1 where unreachable or the root itself.
+     */
+    void row (int root, int [] dist, int [] nexthop);
+  }
+  
+  /**
+   * Snapshot the graph and run the SPF from every node of it. The graph
+   * must not be modified while the snapshot is taken, but may be modified
+   * afterward, while the searches run.
+   */
+  public void run () {
+    final CsrGraph<N,E> csr = g.freeze ();
+    final int n = csr.nodeIdBound ();
+    final int [][] nexthops = new int [n][];
+    final int [][] distances = keep_distances ? new int [n][] : null;
+    
+    run (csr, (root, dist, nh) -> {
+      nexthops[root] = nh.clone ();
+      if (distances != null)
+        distances[root] = dist.clone ();
+    });
+    
+    this.csr = csr;
+    this.nexthops = nexthops;
+    this.distances = distances;
+  }
+  
+  /**
+   * Snapshot the graph and run the SPF from every node of it, passing
+   * the results for each root to the given handler, rather than keeping
+   * them. This allows results too big for memory to be streamed elsewhere,
+   * e.g. to a {@link org.nongnu.multigraph.metrics.mapped_dmap}. The ids
+   * are those of the snapshot, which is the graph itself where that is
+   * already a {@link CsrGraph}.
+   * 
+   * @param h The handler to pass the results of each SPF run to.
+   */
+  public void run (row_handler h) {
+    run (g.freeze (), h);
+  }
+  
+  /**
+   * Snapshot the graph and run the SPF from each of the given roots,
+   * passing the results for each to the given handler, as with
+   * {@link #run(row_handler)}. This allows a sample of the rows to be
+   * taken, or rows to be chosen from the results of earlier rows. The
+   * roots are ids of the snapshot, and so the graph should already be a
+   * {@link CsrGraph} for them to be known beforehand.
+   * 
+   * @param roots The ids of the roots to run the SPF from.
+   * @param h The handler to pass the results of each SPF run to.
+   */
+  public void run (int [] roots, row_handler h) {
+    run (g.freeze (), roots, h);
+  }
+  
+  private void run (final CsrGraph<N,E> csr, final row_handler h) {
+    run (csr, null, h);
+  }
+  
+  /* Run from the given roots, or from every node if null */
+  private void run (final CsrGraph<N,E> csr, final int [] roots,
+                    final row_handler h) {
+    final int n = csr.nodeIdBound ();
+    final ThreadLocal<workspace> ws
+      = ThreadLocal.withInitial (() -> new workspace (n));
+    
+    class task extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+      final int lo, hi;
+      
+      task (int lo, int hi) {
+        this.lo = lo;
+        this.hi = hi;
+      }
+      
+      @Override
+      protected void compute () {
+        if (hi - lo > THRESHOLD) {
+          int mid = (lo + hi) >>> 1;
+          invokeAll (new task (lo, mid), new task (mid, hi));
+          return;
+        }
+        
+        workspace w = ws.get ();
+        for (int i = lo; i < hi; i++) {
+          int root = roots == null ? i : roots[i];
+          spf (csr, root, w.dist, w.nexthop, w.heap);
+          h.row (root, w.dist, w.nexthop);
+        }
+      }
+    }
+    
+    pool.invoke (new task (0, roots == null ? n : roots.length));
+  }
+  
+  /* Dijkstra from root, filling in the dist and nexthop rows */
+  private static void spf (CsrGraph<?,?> csr, int root,
+                           int [] dist, int [] nh, IntHeap heap) {
+    final int [] targets = csr.targets ();
+    final int [] weights = csr.weights ();
+    
+    Arrays.fill (dist, Integer.MAX_VALUE);
+    Arrays.fill (nh, -1);
+    heap.clear ();
+    
+    dist[root] = 0;
+    heap.insert (root, 0);
+    
+    while (!heap.isEmpty ()) {
+      int u = heap.poll ();
+      int du = dist[u];
+      int hu = nh[u];
+      int end = csr.offset (u + 1);
+      
+      for (int i = csr.offset (u); i < end; i++) {
+        int v = targets[i];
+        int d = du + weights[i];
+        int h = (u == root) ? v : hu;
+        
+        /* overflow, treat as unreachable */
+        if (d < 0)
+          continue;
+        
+        if (d < dist[v]) {
+          dist[v] = d;
+          nh[v] = h;
+          heap.insert (v, d);
+        } else if (d == dist[v] && h < nh[v]) {
+          /* equal cost, prefer the lowest next-hop. Weights are positive,
+           * so V can not yet have been settled.
+           */
+          nh[v] = h;
+        }
+      }
+    }
+  }
+  
+  private void check_run () {
+    if (csr == null)
+      throw new IllegalStateException ("run () has not been called");
+  }
+  
+  /**
+   * @return The snapshot of the graph the tables were computed over, which
+   *         gives the mapping between nodes and their ids.
+   */
+  public CsrGraph<N,E> graph () {
+    check_run ();
+    return csr;
+  }
+  
+  /**
+   * @param from The id of the root node.
+   * @param to The id of the destination node.
+   * @return The id of the next-hop from the root towards the destination,
+   *         or -1 if the destination is the root, or is unreachable.
+   */
+  public int nexthop (int from, int to) {
+    check_run ();
+    return nexthops[from][to];
+  }
+  
+  /**
+   * @param from The root node.
+   * @param to The destination node.
+   * @return The next-hop from the root towards the destination, or null if
+   *         the destination is the root, is unreachable, or either node
+   *         was not in the graph.
+   */
+  public N nexthop (N from, N to) {
+    int f, t, nh;
+    
+    check_run ();
+    if ((f = csr.nodeId (from)) < 0 || (t = csr.nodeId (to)) < 0)
+      return null;
+    
+    return (nh = nexthops[f][t]) < 0 ? null : csr.node (nh);
+  }
+  
+  /**
+   * @param from The id of the root node.
+   * @param to The id of the destination node.
+   * @return The cost of the shortest path from the root to the destination,
+   *         or Integer.MAX_VALUE if the destination is unreachable.
+   */
+  public int distance (int from, int to) {
+    check_distances ();
+    return distances[from][to];
+  }
+  
+  /**
+   * @param from The root node.
+   * @param to The destination node.
+   * @return The cost of the shortest path from the root to the destination,
+   *         or Integer.MAX_VALUE if the destination is unreachable or either
+   *         node was not in the graph.
+   */
+  public int distance (N from, N to) {
+    int f, t;
+    
+    check_distances ();
+    if ((f = csr.nodeId (from)) < 0 || (t = csr.nodeId (to)) < 0)
+      return Integer.MAX_VALUE;
+    
+    return distances[f][t];
+  }
+  
+  private void check_distances () {
+    check_run ();
+    if (distances == null)
+      throw new IllegalStateException ("distances were not kept");
+  }
+  
+  /**
+   * @param from The id of the root node.
+   * @return The next-hop row for the root, indexed by destination id. This
+   *         is the internal array, and must not be modified.
+   */
+  public int [] nexthops (int from) {
+    check_run ();
+    return nexthops[from];
+  }
+  
+  /**
+   * @param from The id of the root node.
+   * @return The distance row for the root, indexed by destination id. This
+   *         is the internal array, and must not be modified.
+   */
+  public int [] distances (int from) {
+    check_distances ();
+    return distances[from];
+  }
+}
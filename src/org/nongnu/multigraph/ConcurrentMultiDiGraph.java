@@ -0,0 +1,579 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
+
+/**
+ * A multi-edge, directed graph for concurrent use, with the same semantics
+ * as {@link MultiDiGraph}, but without a graph-wide lock.
+ * <p>
+ * Nodes are held in a ConcurrentHashMap, and each node holds its edges in
+ * concurrent maps too, so all queries are lock-free. Modifications lock
+ * only the node the edge leaves from (or the node being removed), so
+ * writers acting on different nodes proceed in parallel. Modifications
+ * to the same node are serialised.
+ * <p>
+ * Iteration is weakly consistent, as for the java.util.concurrent
+ * collections: iterators over the nodes, or over the edges of a node,
+ * never throw ConcurrentModificationException, and reflect every change
+ * made before the iterator was created, and may or may not reflect
+ * changes made after. Aggregate queries, such as {@link #link_count()}
+ * and {@link #max_nodal_degree()}, are similarly a weakly consistent view
+ * where writers are active, as is the snapshot of the nodes taken by
+ * {@link #nodeStream()}, and the snapshot of the graph taken by
+ * {@link #freeze()}. Edge weights are updated in place, as with
+ * MultiDiGraph, and so a concurrent reader may briefly see the old weight.
+ * <p>
+ * Notifying Observers serialises writers on the Observable, so
+ * notifications are only generated while Observers are registered.
+ *
+ * @param N The type of the Nodes in the graph
+ * @param E The type of the Edges in the graph
+ */
+public class ConcurrentMultiDiGraph<N,E>
+       extends PluggableObservable
+       implements Graph<N,E> {
+
+  /* Internal node state. Writers synchronize on the cnode. */
+  private static class cnode<N,E> {
+    final N unode;
+    /* destination -> label -> edge, as per Node */
+    final ConcurrentHashMap<N,ConcurrentHashMap<E,Edge<N,E>>> edgelist
+      = new ConcurrentHashMap<> ();
+    final Set<Edge<N,E>> all_edges = ConcurrentHashMap.newKeySet ();
+    final Set<Edge<N,E>> all_edges_ro
+      = Collections.unmodifiableSet (all_edges);
+    /* Set, under the lock, once the node has been removed from the graph.
+     * Writers that raced with the removal must then retry.
+     */
+    boolean removed = false;
+
+    cnode (N unode) {
+      this.unode = unode;
+    }
+  }
+
+  private final ConcurrentHashMap<N,cnode<N,E>> nodes;
+  private final Set<N> nodeset;
+  private final LongAdder edge_count = new LongAdder ();
+
+  public ConcurrentMultiDiGraph () {
+    nodes = new ConcurrentHashMap<> ();
+    nodeset = nodes.keySet ();
+  }
+
+  /**
+   * @param expected_nodes The number of nodes the graph is expected to
+   *                       hold, to size its internal tables.
+   */
+  public ConcurrentMultiDiGraph (int expected_nodes) {
+    nodes = new ConcurrentHashMap<> (expected_nodes);
+    nodeset = nodes.keySet ();
+  }
+
+  /* Get the internal node, creating as needs be */
+  private cnode<N,E> get_node (N user_node) {
+    cnode<N,E> n = nodes.get (user_node);
+
+    if (n != null)
+      return n;
+
+    cnode<N,E> nn = new cnode<N,E> (user_node);
+    if ((n = nodes.putIfAbsent (user_node, nn)) != null)
+      return n;
+
+    if (has_observers ())
+      notifyObservers (user_node);
+    return nn;
+  }
+
+  private void edge_event (E label) {
+    if (!edge_events.has_observers ())
+      return;
+
+    setChanged ();
+    edge_events.notifyObservers (label);
+  }
+
+  @Override
+  public void set (N from, N to, E label) {
+    set (from, to, label, 1);
+  }
+
+  @Override
+  public void set (N from, N to, E label, int weight) {
+    if (from == null)
+      throw new NullPointerException ("set: 'from' must not be null");
+    if (label == null)
+      throw new NullPointerException ("set: 'label' must not be null");
+    if (to == null)
+      to = from;
+
+    weight = weight > 0 ? weight : 1;
+
+    for (;;) {
+      cnode<N,E> nf = get_node (from);
+
+      /* ensure 'to' exists, as per MultiDiGraph */
+      if (to != from)
+        get_node (to);
+
+      synchronized (nf) {
+        if (nf.removed)
+          continue;
+
+        ConcurrentHashMap<E,Edge<N,E>> to_edges = nf.edgelist.get (to);
+        Edge<N,E> e;
+
+        if (to_edges != null && (e = to_edges.get (label)) != null)
+          e.set_weight (weight);
+        else {
+          if (to_edges == null) {
+            to_edges = new ConcurrentHashMap<E,Edge<N,E>> ();
+            nf.edgelist.put (to, to_edges);
+          }
+          e = new Edge<N,E> (from, to, weight, label);
+          to_edges.put (label, e);
+          nf.all_edges.add (e);
+          edge_count.increment ();
+        }
+      }
+      break;
+    }
+
+    edge_event (label);
+  }
+
+  /* Remove edges from nf to 'to', with the given label or all if the label
+   * is null. Must be called with nf locked.
+   */
+  private boolean _remove (cnode<N,E> nf, N to, E label) {
+    ConcurrentHashMap<E,Edge<N,E>> to_edges = nf.edgelist.get (to);
+
+    if (to_edges == null)
+      return false;
+
+    if (label != null) {
+      Edge<N,E> e = to_edges.remove (label);
+
+      if (e == null)
+        return false;
+
+      nf.all_edges.remove (e);
+      edge_count.decrement ();
+
+      if (to_edges.isEmpty ())
+        nf.edgelist.remove (to);
+      return true;
+    }
+
+    nf.edgelist.remove (to);
+    for (Edge<N,E> e : to_edges.values ()) {
+      nf.all_edges.remove (e);
+      edge_count.decrement ();
+    }
+    return true;
+  }
+
+  private boolean remove_edge (N from, N to, E label) {
+    cnode<N,E> nf;
+    boolean ret;
+
+    if (from == null)
+      throw new NullPointerException ("remove: 'from' must not be null");
+    if (to == null)
+      throw new NullPointerException ("remove: 'to' must not be null");
+
+    if ((nf = nodes.get (from)) == null)
+      return false;
+
+    synchronized (nf) {
+      ret = _remove (nf, to, label);
+    }
+
+    if (ret)
+      edge_event (label);
+    return ret;
+  }
+
+  @Override
+  public boolean remove (N from, N to, E label) {
+    return remove_edge (from, to, label);
+  }
+
+  @Override
+  public boolean remove (N from, N to) {
+    return remove_edge (from, to, null);
+  }
+
+  @Override
+  public boolean add (N node) {
+    return get_node (node) != null;
+  }
+
+  @Override
+  public boolean remove (Object o) {
+    cnode<N,E> n = nodes.get (o);
+    Edge<?,?> [] removed;
+
+    if (n == null)
+      return false;
+
+    synchronized (n) {
+      if (n.removed)
+        return false;
+
+      n.removed = true;
+      nodes.remove (o, n);
+      removed = _clear (n);
+    }
+
+    edge_events (removed);
+    if (has_observers ())
+      notifyObservers (o);
+    return true;
+  }
+
+  /* Clear all edges of the node, which must be locked. Returns the
+   * removed edges, if they will be needed for notifications.
+   */
+  private Edge<?,?> [] _clear (cnode<N,E> n) {
+    Edge<?,?> [] removed = null;
+
+    if (edge_events.has_observers ())
+      removed = n.all_edges.toArray (new Edge<?,?> [0]);
+
+    edge_count.add (-n.all_edges.size ());
+    n.edgelist.clear ();
+    n.all_edges.clear ();
+    return removed;
+  }
+
+  @SuppressWarnings ("unchecked")
+  private void edge_events (Edge<?,?> [] removed) {
+    if (removed == null)
+      return;
+    for (Edge<?,?> e : removed)
+      edge_event ((E) e.label ());
+  }
+
+  @Override
+  public void clear (N from) {
+    cnode<N,E> nf = nodes.get (from);
+
+    if (nf == null)
+      return;
+
+    Edge<?,?> [] removed;
+    synchronized (nf) {
+      removed = _clear (nf);
+    }
+    edge_events (removed);
+  }
+
+  /**
+   * Clear all edges in the graph. Nodes will remain. Each node is cleared
+   * atomically, but the graph as a whole is not: edges added concurrently
+   * may survive.
+   */
+  @Override
+  public void clear_all_edges () {
+    for (cnode<N,E> n : nodes.values ())
+      synchronized (n) {
+        edge_count.add (-n.all_edges.size ());
+        n.edgelist.clear ();
+        n.all_edges.clear ();
+      }
+
+    setChanged ();
+    edge_events.notifyObservers ();
+  }
+
+  /**
+   * Clear all the nodes and edges in the graph. As with
+   * {@link #clear_all_edges()}, this is not atomic with respect to
+   * concurrent writers.
+   */
+  @Override
+  public void clear () {
+    for (N n : nodeset)
+      remove (n);
+
+    setChanged ();
+    notifyObservers ();
+    edge_events.notifyObservers ();
+  }
+
+  /* Queries */
+
+  @Override
+  public Set<Edge<N,E>> edges (N from) {
+    cnode<N,E> n = nodes.get (from);
+    return n == null ? null : n.all_edges_ro;
+  }
+
+  @Override
+  public Stream<Edge<N,E>> stream (N from) {
+    cnode<N,E> n = nodes.get (from);
+    return n == null ? null : n.all_edges.stream ();
+  }
+
+  @Override
+  public Collection<Edge<N,E>> edges (N from, N to) {
+    cnode<N,E> nf;
+    ConcurrentHashMap<E,Edge<N,E>> to_edges;
+
+    if ((nf = nodes.get (from)) == null || !nodes.containsKey (to))
+      return null;
+    if ((to_edges = nf.edgelist.get (to)) == null)
+      return Collections.emptySet ();
+
+    return Collections.unmodifiableCollection (to_edges.values ());
+  }
+
+  @Override
+  public Edge<N,E> edge (N from, N to) {
+    cnode<N,E> nf;
+    ConcurrentHashMap<E,Edge<N,E>> to_edges;
+
+    if ((nf = nodes.get (from)) == null || !nodes.containsKey (to))
+      return null;
+    if ((to_edges = nf.edgelist.get (to)) == null)
+      return null;
+
+    for (Edge<N,E> e : to_edges.values ())
+      return e;
+    return null;
+  }
+
+  @Override
+  public Edge<N,E> edge (N from, N to, E label) {
+    cnode<N,E> nf;
+    ConcurrentHashMap<E,Edge<N,E>> to_edges;
+
+    if ((nf = nodes.get (from)) == null || !nodes.containsKey (to))
+      return null;
+    if ((to_edges = nf.edgelist.get (to)) == null)
+      return null;
+
+    return to_edges.get (label);
+  }
+
+  @Override
+  public boolean is_linked (N from, N to) {
+    cnode<N,E> nf;
+
+    if ((nf = nodes.get (from)) == null || !nodes.containsKey (to))
+      return false;
+
+    return nf.edgelist.containsKey (to);
+  }
+
+  @Override
+  public Set<N> successors (N from) {
+    cnode<N,E> n = nodes.get (from);
+    return n == null ? null
+                     : Collections.unmodifiableSet (n.edgelist.keySet ());
+  }
+
+  @Override
+  public int edge_outdegree (N node) {
+    cnode<N,E> n = nodes.get (node);
+    return n == null ? 0 : n.all_edges.size ();
+  }
+
+  @Override
+  public int nodal_outdegree (N node) {
+    cnode<N,E> n = nodes.get (node);
+    return n == null ? 0 : n.edgelist.size ();
+  }
+
+  @Override
+  public float avg_nodal_degree () {
+    float avg = 0;
+    int num = 0;
+
+    for (cnode<N,E> n : nodes.values ()) {
+      num++;
+      avg += (n.edgelist.size () - avg) / num;
+    }
+    return avg;
+  }
+
+  /**
+   * @return The number of edges in the graph, which is maintained as
+   *         edges are added and removed and so is cheap to query.
+   */
+  @Override
+  public long link_count () {
+    return edge_count.sum ();
+  }
+
+  @Override
+  public int max_nodal_degree () {
+    int max = 0;
+
+    for (cnode<N,E> n : nodes.values ())
+      max = Math.max (max, n.edgelist.size ());
+
+    return max;
+  }
+
+  @Override
+  public Iterable<N> random_node_iterable () {
+    return new Iterable<N> () {
+      @Override
+      public Iterator<N> iterator () {
+        ArrayList<N> al = new ArrayList<N> (nodeset);
+        Collections.shuffle (al);
+        return al.iterator ();
+      }
+    };
+  }
+
+  @Override
+  public Iterable<Edge<N,E>> random_edge_iterable (final N n) {
+    return new Iterable<Edge<N,E>> () {
+      @Override
+      public Iterator<Edge<N,E>> iterator () {
+        Set<Edge<N,E>> edges = edges (n);
+        ArrayList<Edge<N,E>> al = edges == null
+                                  ? new ArrayList<Edge<N,E>> ()
+                                  : new ArrayList<Edge<N,E>> (edges);
+        Collections.shuffle (al);
+        return al.iterator ();
+      }
+    };
+  }
+
+  /**
+   * Take a snapshot of the graph, which writers need not be stopped for.
+   * The snapshot is weakly consistent, as for iteration: it holds the
+   * nodes as seen by {@link #toArray()}, and each node has those of its
+   * edges to those nodes that were seen when the node was reached. Edges
+   * set or removed while the snapshot is being taken may or may not be
+   * included.
+   * @return A {@link CsrGraph} snapshot of the graph.
+   */
+  @Override
+  public CsrGraph<N,E> freeze () {
+    return new CsrGraph<N,E> (this, true);
+  }
+
+  @Override
+  public String toString () {
+    StringBuilder sb = new StringBuilder ();
+    for (cnode<N,E> n : nodes.values ()) {
+      sb.append (n.unode + "\n");
+      for (Edge<N,E> e : n.all_edges)
+        sb.append ("\t" + e + "\n");
+    }
+    return sb.toString ();
+  }
+
+  /* Set interface */
+
+  @Override
+  public boolean addAll (Collection<? extends N> c) {
+    boolean ret = false;
+    for (N n : c)
+      if (!nodes.containsKey (n) && add (n))
+        ret = true;
+    return ret;
+  }
+  @Override
+  public boolean removeAll (Collection<?> c) {
+    boolean ret = false;
+    for (Object o : c)
+      if (remove (o))
+        ret = true;
+    return ret;
+  }
+  @Override
+  public boolean retainAll (Collection<?> c) {
+    boolean ret = false;
+    for (N n : nodeset)
+      if (!c.contains (n) && remove (n))
+        ret = true;
+    return ret;
+  }
+  @Override
+  public boolean contains (Object o) { return nodeset.contains (o); }
+  @Override
+  public boolean containsAll (Collection<?> c) {
+    return nodeset.containsAll (c);
+  }
+  @Override
+  public boolean equals (Object o) { return nodeset.equals (o); }
+  @Override
+  public int hashCode () { return nodeset.hashCode (); }
+  @Override
+  public boolean isEmpty () { return nodeset.isEmpty (); }
+  @Override
+  public int size () { return nodeset.size (); }
+  @Override
+  public Object[] toArray () { return nodeset.toArray (); }
+  @Override
+  public <T> T[] toArray (T[] a) { return nodeset.toArray (a); }
+  @Override
+  public Iterator<N> iterator () {
+    final Iterator<N> it = nodeset.iterator ();
+
+    /* Removal must go through the graph, to clear the node's edges */
+    return new Iterator<N> () {
+      N last = null;
+      @Override
+      public boolean hasNext () {
+        return it.hasNext ();
+      }
+      @Override
+      public N next () {
+        return (last = it.next ());
+      }
+      @Override
+      public void remove () {
+        if (last == null)
+          throw new IllegalStateException ();
+        ConcurrentMultiDiGraph.this.remove (last);
+        last = null;
+      }
+    };
+  }
+
+  @Override
+  public boolean is_directed () {
+    return true;
+  }
+
+  @Override
+  public boolean is_simple () {
+    return false;
+  }
+
+  /* Allow edge events to be observable too */
+  private final PluggableObservable edge_events = new PluggableObservable ();
+
+  @Override
+  public PluggableObservable edge_events () {
+    return edge_events;
+  }
+}
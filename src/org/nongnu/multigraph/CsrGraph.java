@@ -0,0 +1,836 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.*;
+
+/**
+ * An immutable, compact snapshot of a {@link Graph}, in "Compressed Sparse
+ * Row" form.
+ * <p>
+ * Nodes are interned to dense integer ids, 0 to size () - 1, which are also
+ * available through the {@link IntGraph} interface. The out-edges
+ * of all nodes are stored in flat, primitive arrays, with the edges of node
+ * i occupying the range offsets[i] to offsets[i + 1] of the targets,
+ * weights and labels arrays. Within that range, edges are sorted by the id
+ * of the node they go to. There are no per-edge objects, so a snapshot
+ * needs a fraction of the memory of the graph it was taken from, and
+ * iterating over the neighbours of a node is a linear scan of an array.
+ * <p>
+ * The read side of the Graph interface is fully supported. {@link Edge}
+ * objects are created on demand, and so have no identity beyond the
+ * {@literal <from,to,label>} that they describe. Methods that would modify
+ * the graph throw UnsupportedOperationException. As the snapshot can not
+ * change, no events are ever delivered to Observers.
+ * <p>
+ * Obtain a snapshot with {@link Graph#freeze()}.
+ *
+ * @param N The type of the Nodes in the graph
+ * @param E The type of the Edges in the graph
+ */
+public class CsrGraph<N,E>
+       extends PluggableObservable
+       implements Graph<N,E>, IntGraph<N> {
+  /* id -> user node */
+  private final N [] nodes;
+  /* user node -> id */
+  private final HashMap<N,Integer> ids;
+  /* out-edges of node i are in [offsets[i], offsets[i + 1]) */
+  private final int [] offsets;
+  private final int [] targets;
+  private final int [] weights;
+  private final E [] labels;
+
+  private final boolean directed;
+  private final boolean simple;
+
+  /* aggregates, the snapshot can not change so calculate these once */
+  private final long link_count;
+  private final int max_nodal_degree;
+  private final float avg_nodal_degree;
+
+  private final PluggableObservable edge_events = new PluggableObservable ();
+
+  /**
+   * Take a snapshot of the given graph. The caller must ensure the graph
+   * is not modified while the snapshot is being taken.
+   * @param g The graph to take a snapshot of.
+   * @see Graph#freeze()
+   */
+  CsrGraph (Graph<N,E> g) {
+    this (g, false);
+  }
+
+  /**
+   * Take a snapshot of the given graph, optionally tolerating concurrent
+   * writers. If weak, the snapshot is weakly consistent: it is taken over
+   * the nodes as given by {@link Graph#toArray()}, which the graph must be
+   * able to give safely while being modified. Edges to nodes that are not
+   * in that set, and edges added to a node after its out-degree was read,
+   * are left out. Otherwise the graph must not be modified while the
+   * snapshot is being taken, and ConcurrentModificationException is thrown
+   * where that is detected.
+   * @param g The graph to take a snapshot of.
+   * @param weak Whether to tolerate concurrent writers.
+   */
+  @SuppressWarnings ("unchecked")
+  CsrGraph (Graph<N,E> g, boolean weak) {
+    long num_edges = 0;
+    int num;
+    int i = 0;
+
+    directed = g.is_directed ();
+    simple = g.is_simple ();
+
+    if (weak) {
+      nodes = (N []) g.toArray ();
+      num = nodes.length;
+      ids = new HashMap<N,Integer> (Math.max (16, (int) (num / 0.75f) + 1));
+      for (i = 0; i < num; i++)
+        ids.put (nodes[i], i);
+    } else {
+      num = g.size ();
+      nodes = (N []) new Object[num];
+      ids = new HashMap<N,Integer> (Math.max (16, (int) (num / 0.75f) + 1));
+
+      for (N n : g) {
+        if (i == num)
+          throw new ConcurrentModificationException (
+            "graph changed while taking snapshot");
+        nodes[i] = n;
+        ids.put (n, i);
+        i++;
+      }
+
+      if (i != num)
+        throw new ConcurrentModificationException (
+          "graph changed while taking snapshot");
+    }
+
+    offsets = new int [num + 1];
+    for (i = 0; i < num; i++) {
+      num_edges += g.edge_outdegree (nodes[i]);
+      if (num_edges > Integer.MAX_VALUE - 8)
+        throw new IllegalArgumentException ("too many edges for snapshot");
+      offsets[i + 1] = (int) num_edges;
+    }
+
+    targets = new int [(int) num_edges];
+    weights = new int [(int) num_edges];
+    labels = (E []) new Object[(int) num_edges];
+
+    for (i = 0; i < num; i++) {
+      Set<Edge<N,E>> es = g.edges (nodes[i]);
+      int pos = offsets[i];
+
+      /* only if weak: the node was removed since */
+      if (es == null)
+        es = Collections.emptySet ();
+
+      for (Edge<N,E> e : es) {
+        Integer to = ids.get (e.to ());
+
+        /* edges to removed nodes may linger, see DESIGN.txt */
+        if (to == null)
+          continue;
+        if (pos >= offsets[i + 1]) {
+          if (weak)
+            break;
+          throw new ConcurrentModificationException (
+            "graph changed while taking snapshot");
+        }
+
+        targets[pos] = to;
+        weights[pos] = e.weight ();
+        labels[pos] = e.label ();
+        pos++;
+      }
+
+      /* close any gap left by lingering edges, by shifting the rest of
+       * the array down. Rare, so not worth doing more cleverly.
+       */
+      if (pos < offsets[i + 1]) {
+        int gap = offsets[i + 1] - pos;
+        for (int j = i + 1; j <= num; j++)
+          offsets[j] -= gap;
+      }
+
+      sort_row (offsets[i], offsets[i + 1]);
+    }
+
+    /* aggregates */
+    long nodal_sum = 0;
+    int max = 0;
+    for (i = 0; i < num; i++) {
+      int d = nodal_outdegree (i);
+      nodal_sum += d;
+      max = Math.max (max, d);
+    }
+
+    max_nodal_degree = max;
+    avg_nodal_degree = num > 0 ? (float) nodal_sum / num : 0;
+    link_count = directed ? offsets[num] : (offsets[num] + self_loops ()) / 2;
+  }
+
+  /* Sort the edges in [from,to) by target id. Rows are usually short, so
+   * a simple insertion sort, but fall back to a proper sort for big rows.
+   */
+  private void sort_row (int from, int to) {
+    if (to - from > 32) {
+      Integer [] idx = new Integer [to - from];
+      for (int i = 0; i < idx.length; i++)
+        idx[i] = from + i;
+      Arrays.sort (idx, (a, b) -> Integer.compare (targets[a], targets[b]));
+
+      int [] t = new int [idx.length];
+      int [] w = new int [idx.length];
+      Object [] l = new Object [idx.length];
+      for (int i = 0; i < idx.length; i++) {
+        t[i] = targets[idx[i]];
+        w[i] = weights[idx[i]];
+        l[i] = labels[idx[i]];
+      }
+      System.arraycopy (t, 0, targets, from, t.length);
+      System.arraycopy (w, 0, weights, from, w.length);
+      System.arraycopy (l, 0, labels, from, l.length);
+      return;
+    }
+
+    for (int i = from + 1; i < to; i++) {
+      int t = targets[i], w = weights[i];
+      E l = labels[i];
+      int j = i - 1;
+
+      while (j >= from && targets[j] > t) {
+        targets[j + 1] = targets[j];
+        weights[j + 1] = weights[j];
+        labels[j + 1] = labels[j];
+        j--;
+      }
+      targets[j + 1] = t;
+      weights[j + 1] = w;
+      labels[j + 1] = l;
+    }
+  }
+
+  private long self_loops () {
+    long loops = 0;
+    for (int i = 0; i < nodes.length; i++)
+      for (int j = offsets[i]; j < offsets[i + 1]; j++)
+        if (targets[j] == i)
+          loops++;
+    return loops;
+  }
+
+  /* IntGraph interface, and other primitive, id based accessors */
+
+  @Override
+  public int nodeId (N node) {
+    return id (node);
+  }
+
+  private int id (Object node) {
+    Integer id = ids.get (node);
+    return id == null ? -1 : id;
+  }
+
+  @Override
+  public N node (int id) {
+    return nodes[id];
+  }
+
+  @Override
+  public int nodeIdBound () {
+    return nodes.length;
+  }
+
+  @Override
+  public int outDegree (int id) {
+    return offsets[id + 1] - offsets[id];
+  }
+
+  @Override
+  public void forEachEdge (int from, IntEdgeConsumer c) {
+    for (int i = offsets[from]; i < offsets[from + 1]; i++)
+      c.accept (from, targets[i], weights[i]);
+  }
+
+  /**
+   * @param id The id of a node.
+   * @return The index into {@link #targets()}, {@link #weights()} and
+   *         {@link #labels()} of the first out-edge of the given node.
+   *         The out-edges of node id end at offset (id + 1).
+   */
+  public int offset (int id) {
+    return offsets[id];
+  }
+
+  /**
+   * @return The array of the ids of the nodes each edge goes to. Edges of
+   *         a node are sorted by the id of their target. This is the
+   *         internal array of the snapshot, and must not be modified.
+   */
+  public int [] targets () {
+    return targets;
+  }
+
+  /**
+   * @return The array of the weights of the edges. This is the internal
+   *         array of the snapshot, and must not be modified.
+   */
+  public int [] weights () {
+    return weights;
+  }
+
+  /**
+   * @return The array of the labels of the edges. This is the internal
+   *         array of the snapshot, and must not be modified.
+   */
+  public E [] labels () {
+    return labels;
+  }
+
+  /**
+   * @param id The id of a node.
+   * @return The number of distinct nodes to which the given node
+   *         has edges.
+   */
+  public int nodal_outdegree (int id) {
+    int d = 0;
+
+    for (int i = offsets[id]; i < offsets[id + 1]; i++)
+      if (i == offsets[id] || targets[i] != targets[i - 1])
+        d++;
+
+    return d;
+  }
+
+  /* Find the first edge from -> to, via a binary search of the sorted row.
+   * Returns the index of the edge, or -1.
+   */
+  private int find (int from, int to) {
+    int lo = offsets[from], hi = offsets[from + 1] - 1;
+    int found = -1;
+
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+
+      if (targets[mid] < to)
+        lo = mid + 1;
+      else {
+        if (targets[mid] == to)
+          found = mid;
+        hi = mid - 1;
+      }
+    }
+    return found;
+  }
+
+  private Edge<N,E> edge_at (int from, int i) {
+    return new Edge<N,E> (nodes[from], nodes[targets[i]],
+                          weights[i], labels[i]);
+  }
+
+  /* A read-only view of edges [start,end) out of the node 'from' */
+  private class edge_range extends AbstractSet<Edge<N,E>> {
+    final int from, start, end;
+
+    edge_range (int from, int start, int end) {
+      this.from = from;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public Iterator<Edge<N,E>> iterator () {
+      return new Iterator<Edge<N,E>> () {
+        int i = start;
+        @Override
+        public boolean hasNext () {
+          return i < end;
+        }
+        @Override
+        public Edge<N,E> next () {
+          if (i >= end)
+            throw new NoSuchElementException ();
+          return edge_at (from, i++);
+        }
+      };
+    }
+
+    @Override
+    public int size () {
+      return end - start;
+    }
+
+    /* Edges have no identity in a snapshot, so compare by what they
+     * describe.
+     */
+    @Override
+    public boolean contains (Object o) {
+      if (!(o instanceof Edge))
+        return false;
+
+      Edge<?,?> e = (Edge<?,?>) o;
+
+      if (e.from () != nodes[from])
+        return false;
+
+      for (int i = start; i < end; i++)
+        if (nodes[targets[i]] == e.to ()
+            && labels[i] == e.label ())
+          return true;
+      return false;
+    }
+
+    @Override
+    public Stream<Edge<N,E>> stream () {
+      return IntStream.range (start, end).mapToObj (i -> edge_at (from, i));
+    }
+  }
+
+  /* Graph interface: read side */
+
+  @Override
+  public boolean is_directed () {
+    return directed;
+  }
+
+  @Override
+  public boolean is_simple () {
+    return simple;
+  }
+
+  @Override
+  public int edge_outdegree (N node) {
+    int id = id (node);
+    return id < 0 ? 0 : outDegree (id);
+  }
+
+  @Override
+  public int nodal_outdegree (N node) {
+    int id = id (node);
+    return id < 0 ? 0 : nodal_outdegree (id);
+  }
+
+  @Override
+  public float avg_nodal_degree () {
+    return avg_nodal_degree;
+  }
+
+  @Override
+  public long link_count () {
+    return link_count;
+  }
+
+  @Override
+  public int max_nodal_degree () {
+    return max_nodal_degree;
+  }
+
+  /* A read-only view of the distinct nodes the node 'from' has edges to */
+  private class successor_set extends AbstractSet<N> {
+    final int from;
+
+    successor_set (int from) {
+      this.from = from;
+    }
+
+    @Override
+    public Iterator<N> iterator () {
+      return new Iterator<N> () {
+        int i = offsets[from];
+        @Override
+        public boolean hasNext () {
+          return i < offsets[from + 1];
+        }
+        @Override
+        public N next () {
+          if (i >= offsets[from + 1])
+            throw new NoSuchElementException ();
+          int to = targets[i];
+          /* rows are sorted, skip any other edges to the same node */
+          while (i < offsets[from + 1] && targets[i] == to)
+            i++;
+          return nodes[to];
+        }
+      };
+    }
+
+    @Override
+    public int size () {
+      return nodal_outdegree (from);
+    }
+
+    @Override
+    public boolean contains (Object o) {
+      int to = id (o);
+      return to >= 0 && find (from, to) >= 0;
+    }
+  }
+
+  @Override
+  public Set<N> successors (N from) {
+    int id = id (from);
+    return id < 0 ? null : new successor_set (id);
+  }
+
+  @Override
+  public void forEachSuccessor (N from, Consumer<? super N> action) {
+    int id = id (from);
+
+    if (id < 0)
+      return;
+
+    for (int i = offsets[id]; i < offsets[id + 1]; i++)
+      if (i == offsets[id] || targets[i] != targets[i - 1])
+        action.accept (nodes[targets[i]]);
+  }
+
+  @Override
+  public Set<Edge<N,E>> edges (N from) {
+    int id = id (from);
+
+    if (id < 0)
+      return null;
+
+    return new edge_range (id, offsets[id], offsets[id + 1]);
+  }
+
+  @Override
+  public Stream<Edge<N,E>> stream (N from) {
+    Set<Edge<N,E>> edges = edges (from);
+    return edges == null ? null : edges.stream ();
+  }
+
+  /* The snapshot can not change, so stream the arrays directly */
+  @Override
+  public Stream<N> nodeStream () {
+    return StreamSupport.stream (
+      Spliterators.spliterator (nodes, Spliterator.DISTINCT
+                                       | Spliterator.IMMUTABLE),
+      false);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The snapshot can not change, so this needs no copy. The Stream is
+   * SIZED and SUBSIZED by edges, and parallel() pipelines split evenly by
+   * edges, rather than by nodes, so that high-degree nodes do not unbalance
+   * the split.
+   */
+  @Override
+  public Stream<Edge<N,E>> edgeStream () {
+    return StreamSupport.stream (
+      new edge_spliterator (0, offsets[nodes.length], 0), false);
+  }
+
+  /* The node whose out-edges include the edge at index i, skipping over
+   * nodes without edges.
+   */
+  private int edge_node (int i) {
+    int lo = 0, hi = nodes.length - 1;
+
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (offsets[mid] <= i)
+        lo = mid;
+      else
+        hi = mid - 1;
+    }
+    return lo;
+  }
+
+  /* Edges [i,end), with 'from' at or before the node of edge i */
+  private class edge_spliterator implements Spliterator<Edge<N,E>> {
+    int i, from;
+    final int end;
+
+    edge_spliterator (int i, int end, int from) {
+      this.i = i;
+      this.end = end;
+      this.from = from;
+    }
+
+    @Override
+    public boolean tryAdvance (Consumer<? super Edge<N,E>> action) {
+      if (i >= end)
+        return false;
+      while (offsets[from + 1] <= i)
+        from++;
+      action.accept (edge_at (from, i++));
+      return true;
+    }
+
+    @Override
+    public Spliterator<Edge<N,E>> trySplit () {
+      int mid = (i + end) >>> 1;
+
+      if (mid <= i)
+        return null;
+
+      edge_spliterator prefix = new edge_spliterator (i, mid, from);
+      i = mid;
+      from = edge_node (mid);
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize () {
+      return end - i;
+    }
+
+    @Override
+    public int characteristics () {
+      return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED
+             | Spliterator.IMMUTABLE | Spliterator.NONNULL;
+    }
+  }
+
+  @Override
+  public Collection<Edge<N,E>> edges (N from, N to) {
+    int f = id (from), t, i, end;
+
+    if (f < 0 || (t = id (to)) < 0)
+      return null;
+
+    if ((i = find (f, t)) < 0)
+      return Collections.emptySet ();
+
+    for (end = i; end < offsets[f + 1] && targets[end] == t; end++);
+
+    return new edge_range (f, i, end);
+  }
+
+  @Override
+  public Edge<N,E> edge (N from, N to) {
+    int f = id (from), t, i;
+
+    if (f < 0 || (t = id (to)) < 0 || (i = find (f, t)) < 0)
+      return null;
+
+    return edge_at (f, i);
+  }
+
+  @Override
+  public boolean is_linked (N from, N to) {
+    int f = id (from), t;
+
+    if (f < 0 || (t = id (to)) < 0)
+      return false;
+
+    return find (f, t) >= 0;
+  }
+
+  @Override
+  public Edge<N,E> edge (N from, N to, E label) {
+    int f = id (from), t, i;
+
+    if (f < 0 || (t = id (to)) < 0 || (i = find (f, t)) < 0)
+      return null;
+
+    for (; i < offsets[f + 1] && targets[i] == t; i++)
+      if (labels[i] == label)
+        return edge_at (f, i);
+
+    return null;
+  }
+
+  @Override
+  public Iterable<N> random_node_iterable () {
+    return new Iterable<N> () {
+      @Override
+      public Iterator<N> iterator () {
+        ArrayList<N> al = new ArrayList<N> (Arrays.asList (nodes));
+        Collections.shuffle (al);
+        return al.iterator ();
+      }
+    };
+  }
+
+  @Override
+  public Iterable<Edge<N,E>> random_edge_iterable (final N n) {
+    return new Iterable<Edge<N,E>> () {
+      @Override
+      public Iterator<Edge<N,E>> iterator () {
+        ArrayList<Edge<N,E>> al = new ArrayList<Edge<N,E>> (edges (n));
+        Collections.shuffle (al);
+        return al.iterator ();
+      }
+    };
+  }
+
+  /**
+   * The snapshot is already immutable.
+   * @return This snapshot.
+   */
+  @Override
+  public CsrGraph<N,E> freeze () {
+    return this;
+  }
+
+  @Override
+  public PluggableObservable edge_events () {
+    return edge_events;
+  }
+
+  /* Set interface, read side */
+
+  @Override
+  public int size () {
+    return nodes.length;
+  }
+
+  @Override
+  public boolean isEmpty () {
+    return nodes.length == 0;
+  }
+
+  @Override
+  public boolean contains (Object o) {
+    return ids.containsKey (o);
+  }
+
+  @Override
+  public boolean containsAll (Collection<?> c) {
+    for (Object o : c)
+      if (!contains (o))
+        return false;
+    return true;
+  }
+
+  @Override
+  public Iterator<N> iterator () {
+    return Collections.unmodifiableList (Arrays.asList (nodes)).iterator ();
+  }
+
+  @Override
+  public Object[] toArray () {
+    return Arrays.copyOf (nodes, nodes.length, Object[].class);
+  }
+
+  @SuppressWarnings ("unchecked")
+  @Override
+  public <T> T[] toArray (T[] a) {
+    if (a.length < nodes.length)
+      return (T []) Arrays.copyOf (nodes, nodes.length, a.getClass ());
+    System.arraycopy (nodes, 0, a, 0, nodes.length);
+    if (a.length > nodes.length)
+      a[nodes.length] = null;
+    return a;
+  }
+
+  @Override
+  public boolean equals (Object o) {
+    if (o == this)
+      return true;
+    if (!(o instanceof Set))
+      return false;
+    Set<?> s = (Set<?>) o;
+    return s.size () == size () && containsAll (s);
+  }
+
+  @Override
+  public int hashCode () {
+    int h = 0;
+    for (N n : nodes)
+      h += n == null ? 0 : n.hashCode ();
+    return h;
+  }
+
+  @Override
+  public String toString () {
+    StringBuilder sb = new StringBuilder ();
+    for (int i = 0; i < nodes.length; i++) {
+      sb.append (nodes[i] + "\n");
+      for (int j = offsets[i]; j < offsets[i + 1]; j++)
+        sb.append ("\t" + edge_at (i, j) + "\n");
+    }
+    return sb.toString ();
+  }
+
+  /* Graph and Set interface, write side: not supported */
+
+  private static UnsupportedOperationException immutable () {
+    return new UnsupportedOperationException ("CsrGraph snapshots are"
+                                              + " immutable");
+  }
+
+  @Override
+  public void set (N from, N to, E label) {
+    throw immutable ();
+  }
+
+  @Override
+  public void set (N from, N to, E label, int weight) {
+    throw immutable ();
+  }
+
+  @Override
+  public boolean add (N node) {
+    throw immutable ();
+  }
+
+  @Override
+  public boolean remove (N from, N to, E label) {
+    throw immutable ();
+  }
+
+  @Override
+  public boolean remove (N from, N to) {
+    throw immutable ();
+  }
+
+  @Override
+  public void clear_all_edges () {
+    throw immutable ();
+  }
+
+  @Override
+  public void clear (N from) {
+    throw immutable ();
+  }
+
+  @Override
+  public boolean addAll (Collection<? extends N> c) {
+    throw immutable ();
+  }
+
+  @Override
+  public void clear () {
+    throw immutable ();
+  }
+
+  @Override
+  public boolean remove (Object o) {
+    throw immutable ();
+  }
+
+  @Override
+  public boolean removeAll (Collection<?> c) {
+    throw immutable ();
+  }
+
+  @Override
+  public boolean retainAll (Collection<?> c) {
+    throw immutable ();
+  }
+}
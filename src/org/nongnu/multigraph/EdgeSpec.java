@@ -0,0 +1,80 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+/**
+ * Description of an edge to be set in a graph, for 
+ * {@link Graph#bulk_load(java.util.stream.Stream)}.
+ *
+ * @param N The type of the Nodes in the graph
+ * @param E The type of the Edges in the graph
+ */
+public final class EdgeSpec<N,E> {
+  private final N from, to;
+  private final E label;
+  private final int weight;
+  
+  /**
+   * @param from The node the edge is from.
+   * @param to The node the edge is to.
+   * @param label The label of the edge.
+   * @param weight The weight of the edge.
+   */
+  public EdgeSpec (N from, N to, E label, int weight) {
+    if (from == null || to == null)
+      throw new IllegalArgumentException ("nodes must not be null");
+    if (label == null)
+      throw new IllegalArgumentException ("label must not be null");
+    
+    this.from = from;
+    this.to = to;
+    this.label = label;
+    this.weight = weight;
+  }
+  
+  /**
+   * An unweighted edge, i.e. of weight 1.
+   * @param from The node the edge is from.
+   * @param to The node the edge is to.
+   * @param label The label of the edge.
+   */
+  public EdgeSpec (N from, N to, E label) {
+    this (from, to, label, 1);
+  }
+  
+  public N from () {
+    return from;
+  }
+  public N to () {
+    return to;
+  }
+  public E label () {
+    return label;
+  }
+  public int weight () {
+    return weight;
+  }
+  
+  @Override
+  public String toString () {
+    return "<" + from + " -> " + to + ": "
+           + label
+           + ", " + weight
+           + ">";
+  }
+}
@@ -18,6 +18,7 @@
 package org.nongnu.multigraph;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.*;
 
 /**
@@ -159,6 +160,20 @@ public interface Graph<N,E> extends Set<N> {
    *         the node exists but has no successors.
    */
   Set<N> successors (N from);
+  
+  /**
+   * Call the given action for each successor of the given node, as per
+   * {@link #successors(Object)}, without needing to allocate a set of them.
+   * The action must not modify the edges of the node.
+   * @param from The given node, which is to be queried.
+   * @param action The action to call for each successor.
+   */
+  default void forEachSuccessor (N from, Consumer<? super N> action) {
+    Set<N> s = successors (from);
+    
+    if (s != null)
+      s.forEach (action);
+  }
   /**
    * @param from The given node, which is to be queried.
    * @return The set of edges that go out from this node. The returned set is 
@@ -174,7 +189,52 @@ public interface Graph<N,E> extends Set<N> {
    * @return a Stream over the edges.
    */
   Stream<Edge<N,E>> stream (N from);
-  
+
+  /**
+   * Obtain a Stream over all the nodes of the graph. The Stream runs over
+   * a snapshot of the nodes, taken when this method is called, and its
+   * Spliterator is SIZED and SUBSIZED, so that parallel() pipelines split
+   * the nodes evenly between threads.
+   * <p>
+   * Nodes added to or removed from the graph after the call are not
+   * reflected in the Stream. Graphs which are safe to use from multiple
+   * threads take the snapshot safely with respect to concurrent writers,
+   * either atomically or weakly consistently, see the implementations.
+   * Otherwise the graph must not be modified during the call.
+   * Any later queries the pipeline makes of the graph, e.g. for the edges
+   * of each node, see the graph as it is at that time.
+   * @return a Stream over a snapshot of the nodes of the graph.
+   */
+  default Stream<N> nodeStream () {
+    @SuppressWarnings ("unchecked")
+    N [] ns = (N []) toArray ();
+    return StreamSupport.stream (
+      Spliterators.spliterator (ns, Spliterator.DISTINCT
+                                    | Spliterator.IMMUTABLE),
+      false);
+  }
+
+  /**
+   * Obtain a Stream over all the edges of the graph, being the edges from
+   * each node, as given by {@link #stream(Object)}. For undirected graphs
+   * each edge therefore appears once from each of its ends.
+   * <p>
+   * By default, this is built over {@link #nodeStream()}, so splits
+   * evenly by nodes rather than by edges, and the edges of each node are
+   * read when the Stream reaches that node. The Stream then is consistent
+   * for each node, but not across nodes, with respect to concurrent
+   * writers: an edge set or removed while the Stream is running may or may
+   * not be seen. Graphs may override this to give a SIZED snapshot of all
+   * the edges, see the implementations for their guarantees.
+   * @return a Stream over the edges of the graph.
+   */
+  default Stream<Edge<N,E>> edgeStream () {
+    return nodeStream ().flatMap (n -> {
+      Stream<Edge<N,E>> s = stream (n);
+      return s == null ? Stream.empty () : s;
+    });
+  }
+
   /**
    * Find the edges going <em>from</em> one node <em>to</em> another node.
    * @param from Which node we want to query edges from.
@@ -227,6 +287,33 @@ public interface Graph<N,E> extends Set<N> {
    */
   public Iterable<Edge<N,E>> random_edge_iterable (N n);
   
+  /**
+   * Set all the edges described by the stream, as if by
+   * {@link #set(Object, Object, Object, int)}, adding nodes as required.
+   * <p>
+   * Implementations may load the edges more efficiently than by setting
+   * each in turn, e.g. by taking any lock only once, and by replacing the
+   * notifications to Observers of each new node and edge with a single,
+   * general notification once loading is complete, as from
+   * {@link #clear_all_edges()}.
+   * 
+   * @param edges The stream of edges to set.
+   */
+  default void bulk_load (Stream<? extends EdgeSpec<N,E>> edges) {
+    edges.forEachOrdered (s -> set (s.from (), s.to (), s.label (),
+                                    s.weight ()));
+  }
+  
+  /**
+   * Take an immutable, compact snapshot of the graph, suited to
+   * read-heavy analysis. The snapshot is independent of this graph, and
+   * will not reflect any later changes made to it.
+   * @return A {@link CsrGraph} snapshot of the current state of the graph.
+   */
+  default CsrGraph<N,E> freeze () {
+    return new CsrGraph<N,E> (this);
+  }
+  
   /* Shame there's no Observable interface ? */
   /**
    * @see java.util.Observable
@@ -0,0 +1,92 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+/**
+ * Primitive, integer-id view of a graph, for use by algorithms in their
+ * inner loops, alongside the general {@link Graph} interface.
+ * <p>
+ * Every node in the graph has an integer id, which is stable for as long
+ * as the node remains in the graph. Ids are dense: they lie in the range
+ * 0 to {@link #nodeIdBound()} - 1, and so may be used to index arrays
+ * of per-node state. Ids of removed nodes may be re-used for nodes added
+ * later, and there may be gaps in the range where nodes have been removed.
+ *
+ * @param N The type of the Nodes in the graph
+ */
+public interface IntGraph<N> {
+  /**
+   * @param node A node in the graph.
+   * @return The id of the node, or -1 if the node is not in the graph.
+   */
+  int nodeId (N node);
+  
+  /**
+   * @param id A node id.
+   * @return The node with the given id, or null if there is no such node.
+   */
+  N node (int id);
+  
+  /**
+   * @return An upper bound on node ids: every id is strictly less than
+   *         this value.
+   */
+  int nodeIdBound ();
+  
+  /**
+   * @param id A node id.
+   * @return The number of edges leaving the node with the given id, or 0
+   *         if there is no node with that id.
+   */
+  int outDegree (int id);
+  
+  /**
+   * Call the consumer for every edge leaving the node with the given id.
+   * Allocates nothing beyond what the implementation needs to iterate
+   * its own structures. Does nothing if there is no node with that id.
+   * @param from The id of the node to visit the edges of.
+   * @param c The callback to call for each edge.
+   */
+  void forEachEdge (int from, IntEdgeConsumer c);
+  
+  /**
+   * Callback for {@link IntGraph#forEachEdge}.
+   */
+  @FunctionalInterface
+  public interface IntEdgeConsumer {
+    /**
+     * @param from The id of the node the edge leaves from.
+     * @param to The id of the node the edge goes to.
+     * @param weight The weight of the edge.
+     */
+    void accept (int from, int to, int weight);
+  }
+  
+  /**
+   * Obtain an IntGraph for the given graph: the graph itself if it
+   * already implements IntGraph, otherwise a {@link CsrGraph} snapshot of it.
+   * @param g The graph.
+   * @return An IntGraph view, or snapshot, of the graph.
+   */
+  @SuppressWarnings ("unchecked")
+  static <N,E> IntGraph<N> of (Graph<N,E> g) {
+    if (g instanceof IntGraph)
+      return (IntGraph<N>) g;
+    return g.freeze ();
+  }
+}
@@ -0,0 +1,164 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+import java.util.Arrays;
+
+/**
+ * Indexed 4-ary min-heap of integer ids, keyed by integer costs, for
+ * Dijkstra style searches over an {@link IntGraph}. Ids must lie in the
+ * range 0 to the capacity of the heap. The position of each id in the
+ * heap is tracked, so the cost of a queued id may be decreased in place,
+ * without leaving stale entries behind.
+ * <p>
+ * A 4-ary heap is shallower than a binary heap, and the children of a
+ * node share a cache line, which more than pays for the extra comparisons
+ * when sifting down.
+ * <p>
+ * The heap is intended to be allocated once and re-used for many searches,
+ * and allocates nothing after construction, other than to grow.
+ */
+final class IntHeap implements IntQueue {
+  private static final int D = 4;
+  /* heap ordered ids, and their keys, at heap positions [0, size) */
+  private int [] ids;
+  private int [] keys;
+  /* id -> position in the heap, or -1 */
+  private int [] pos;
+  private int size = 0;
+  
+  IntHeap (int capacity) {
+    ids = new int [capacity];
+    keys = new int [capacity];
+    pos = new int [capacity];
+    Arrays.fill (pos, -1);
+  }
+  
+  @Override
+  public int capacity () {
+    return pos.length;
+  }
+  
+  @Override
+  public void ensure_capacity (int capacity) {
+    int old = pos.length;
+    
+    if (capacity <= old)
+      return;
+    
+    capacity = Math.max (capacity, old + (old >> 1));
+    ids = Arrays.copyOf (ids, capacity);
+    keys = Arrays.copyOf (keys, capacity);
+    pos = Arrays.copyOf (pos, capacity);
+    Arrays.fill (pos, old, capacity, -1);
+  }
+  
+  @Override
+  public boolean isEmpty () {
+    return size == 0;
+  }
+  
+  @Override
+  public int size () {
+    return size;
+  }
+  
+  @Override
+  public void clear () {
+    for (int i = 0; i < size; i++)
+      pos[ids[i]] = -1;
+    size = 0;
+  }
+  
+  @Override
+  public boolean contains (int id) {
+    return pos[id] >= 0;
+  }
+  
+  /* The id with the least key, without removing it */
+  int peek () {
+    return ids[0];
+  }
+  
+  int peek_key () {
+    return keys[0];
+  }
+  
+  @Override
+  public void insert (int id, int key) {
+    int i = pos[id];
+    
+    if (i < 0) {
+      i = size++;
+    } else if (key >= keys[i])
+      return;
+    
+    sift_up (i, id, key);
+  }
+  
+  @Override
+  public int poll () {
+    int top = ids[0];
+    
+    pos[top] = -1;
+    if (--size > 0)
+      sift_down (0, ids[size], keys[size]);
+    
+    return top;
+  }
+  
+  private void sift_up (int i, int id, int key) {
+    while (i > 0) {
+      int parent = (i - 1) / D;
+      
+      if (keys[parent] <= key)
+        break;
+      
+      ids[i] = ids[parent];
+      keys[i] = keys[parent];
+      pos[ids[i]] = i;
+      i = parent;
+    }
+    ids[i] = id;
+    keys[i] = key;
+    pos[id] = i;
+  }
+  
+  private void sift_down (int i, int id, int key) {
+    int c;
+    
+    while ((c = D * i + 1) < size) {
+      int end = Math.min (c + D, size);
+      
+      /* the least of the children */
+      for (int j = c + 1; j < end; j++)
+        if (keys[j] < keys[c])
+          c = j;
+      if (key <= keys[c])
+        break;
+      
+      ids[i] = ids[c];
+      keys[i] = keys[c];
+      pos[ids[i]] = i;
+      i = c;
+    }
+    ids[i] = id;
+    keys[i] = key;
+    pos[id] = i;
+  }
+}
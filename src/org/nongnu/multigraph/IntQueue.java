@@ -0,0 +1,52 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+/**
+ * Indexed min-priority queue of integer ids, keyed by integer costs, for
+ * Dijkstra style searches. Ids must lie in the range 0 to the capacity of
+ * the queue. A queued id may have its key decreased in place, without
+ * leaving stale entries behind.
+ * <p>
+ * Implementations are intended to be allocated once and re-used for many
+ * searches, and allocate nothing other than to grow their capacity.
+ */
+interface IntQueue {
+  int capacity ();
+  
+  /* Grow the queue, if needed, to take ids up to the given capacity */
+  void ensure_capacity (int capacity);
+  
+  boolean isEmpty ();
+  
+  int size ();
+  
+  /* Empty the queue. Costs only the number of ids still queued. */
+  void clear ();
+  
+  boolean contains (int id);
+  
+  /**
+   * Queue the id with the given key, or if already queued, lower its key
+   * to the given key. A key higher than the queued key is ignored.
+   */
+  void insert (int id, int key);
+  
+  /* Remove and return the id with the least key */
+  int poll ();
+}
@@ -18,6 +18,9 @@
 package org.nongnu.multigraph;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.stream.*;
 
 /**
@@ -26,6 +29,9 @@ import java.util.stream.*;
  * This implementation allows for multiple, directed edges between any nodes,
  * including between the same node.
  * <p>
+ * The graph also implements {@link IntGraph}. Each node is given an id when
+ * added, which is released for re-use when the node is removed.
+ * <p>
  * XXX: As SimpleDiGraph inherits from this, this class probably should not be
  * public. We don't really want different restrictions of the Graph to be 
  * type-compatible.
@@ -35,25 +41,138 @@ import java.util.stream.*;
  */
 public class MultiDiGraph<N,E>
        extends PluggableObservable
-       implements Graph<N,E> {
+       implements Graph<N,E>, IntGraph<N> {
   
   // Hash of user-specific N-type node objects to internal Node objects
   HashMap<N,Node<N,E>> nodes;
   private Set<N> nodeset;
   
+  /* IntGraph ids: id -> Node, and a stack of ids released by removed
+   * nodes, to be re-used before growing the range.
+   */
+  @SuppressWarnings ("unchecked")
+  private Node<N,E> [] byid = (Node<N,E> []) new Node<?,?> [16];
+  private int id_bound = 0;
+  private int [] free_ids = new int [16];
+  private int free_count = 0;
+  
+  // whether each Node maintains an index of the edges into it
+  private boolean track_predecessors = false;
+  // whether per-node and per-edge notifications are suppressed, see bulk_load
+  private boolean bulk = false;
+  
+  /* Aggregates, maintained as edges are set and removed, so that the
+   * degree and link count queries need not walk the graph.
+   * degree_hist[d] is the number of nodes of nodal out-degree d.
+   */
+  private long edge_count = 0;
+  private long self_loops = 0;
+  private long nodal_degree_sum = 0;
+  private int [] degree_hist = new int [16];
+  private int max_degree = 0;
+  
   public MultiDiGraph () {
     nodes = new HashMap<N,Node<N,E>> ();
     nodeset = nodes.keySet();
   }
   
+  private void id_alloc (Node<N,E> n) {
+    if (free_count > 0)
+      n.id = free_ids[--free_count];
+    else {
+      if (id_bound == byid.length)
+        byid = Arrays.copyOf (byid, byid.length * 2);
+      n.id = id_bound++;
+    }
+    byid[n.id] = n;
+  }
+  
+  private void id_release (Node<N,E> n) {
+    if (n.id < 0)
+      return;
+    
+    byid[n.id] = null;
+    if (free_count == free_ids.length)
+      free_ids = Arrays.copyOf (free_ids, free_ids.length * 2);
+    free_ids[free_count++] = n.id;
+    n.id = -1;
+  }
+  
+  /* Move a node from one bucket of the degree histogram to another */
+  private void degree_change (int from, int to) {
+    if (from == to)
+      return;
+    
+    if (to >= degree_hist.length)
+      degree_hist = Arrays.copyOf (degree_hist,
+                                   Math.max (to + 1, degree_hist.length * 2));
+    
+    degree_hist[from]--;
+    degree_hist[to]++;
+    nodal_degree_sum += to - from;
+    
+    if (to > max_degree)
+      max_degree = to;
+    else
+      while (max_degree > 0 && degree_hist[max_degree] == 0)
+        max_degree--;
+  }
+  
+  /* Account for a change to the out-edges of nf, given its degrees from
+   * before the change.
+   */
+  private void degree_account (Node<N,E> nf, Node<N,E> nt,
+                               int nodal_before, int edges_before) {
+    int delta = nf.edge_outdegree () - edges_before;
+    
+    edge_count += delta;
+    if (nf == nt)
+      self_loops += delta;
+    
+    degree_change (nodal_before, nf.nodal_outdegree ());
+  }
+  
+  /* Recalculate the aggregates from scratch */
+  private void degree_rebuild () {
+    degree_reset ();
+    degree_hist[0] = 0;
+    
+    for (Node<N,E> n : nodes.values ()) {
+      int d = n.nodal_outdegree ();
+      
+      if (d >= degree_hist.length)
+        degree_hist = Arrays.copyOf (degree_hist,
+                                     Math.max (d + 1, degree_hist.length * 2));
+      degree_hist[d]++;
+      max_degree = Math.max (max_degree, d);
+      nodal_degree_sum += d;
+      edge_count += n.edge_outdegree ();
+      self_loops += n.edges (n).size ();
+    }
+  }
+  
+  private void degree_reset () {
+    edge_count = 0;
+    self_loops = 0;
+    nodal_degree_sum = 0;
+    max_degree = 0;
+    Arrays.fill (degree_hist, 0);
+    degree_hist[0] = nodes.size ();
+  }
+  
   /* Get the internal Node for the given user_node, creating as needs be */
   final Node<N,E> get_node (N user_node) {
     Node<N,E> n = nodes.get (user_node);
     
     if (n == null) {
       n = new Node<N,E> (user_node);
+      if (track_predecessors)
+        n.track_in (true);
       nodes.put (user_node, n);
-      notifyObservers (user_node);
+      id_alloc (n);
+      degree_hist[0]++;
+      if (!bulk)
+        notifyObservers (user_node);
     }
     
     return n;
@@ -67,7 +186,12 @@ public class MultiDiGraph<N,E>
     assert nt != null;
     assert label != null;
     
+    int nd = nf.nodal_outdegree (), ed = nf.edge_outdegree ();
     nf.set (nt, weight > 0 ? weight : 1, label);
+    degree_account (nf, nt, nd, ed);
+    
+    if (bulk)
+      return;
     
     setChanged ();
     edge_events.notifyObservers (label);
@@ -113,17 +237,246 @@ public class MultiDiGraph<N,E>
   public synchronized void set (N from, N to, E label, int weight)
     { _set (from, to, weight, label); }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The edges are set with the graph lock taken once, and without any
+   * notifications of new nodes or edges. Observers of the graph and of
+   * its edge events are instead each sent a single, general notification
+   * when loading is complete, or fails.
+   */
+  @Override
+  public void bulk_load (Stream<? extends EdgeSpec<N,E>> edges) {
+    bulk_load (edges, 0);
+  }
+  
+  /**
+   * As {@link #bulk_load(Stream)}, sizing the graph up front for the
+   * given number of nodes.
+   * 
+   * @param edges The stream of edges to set.
+   * @param expected_nodes The number of nodes the graph is expected to
+   *                       have once loaded.
+   */
+  public synchronized void bulk_load (Stream<? extends EdgeSpec<N,E>> edges,
+                                      int expected_nodes) {
+    if (expected_nodes > nodes.size ()) {
+      HashMap<N,Node<N,E>> nn
+        = new HashMap<N,Node<N,E>> ((int) (expected_nodes / 0.75f) + 1);
+      nn.putAll (nodes);
+      nodes = nn;
+      nodeset = nodes.keySet ();
+      if (expected_nodes > byid.length)
+        byid = Arrays.copyOf (byid, expected_nodes);
+    }
+    
+    bulk = true;
+    try {
+      edges.sequential ().forEachOrdered (s -> _set (s.from (), s.to (),
+                                                     s.weight (), s.label ()));
+    } finally {
+      bulk = false;
+      setChanged ();
+      notifyObservers ();
+      edge_events.notifyObservers ();
+    }
+  }
+  
+  /**
+   * Set all the edges described by the stream, as per 
+   * {@link #bulk_load(Stream)}, but building the adjacencies of the nodes 
+   * in parallel, in the common ForkJoinPool.
+   * <p>
+   * The edges are partitioned by a hash of the node they are from into
+   * shards, each of which is loaded by one thread, so that the edges of
+   * any one node are only ever set by one thread, and without locks. New
+   * nodes are then added to the graph, and the aggregates and any
+   * predecessor index rebuilt, once all the edges are set. 
+   * <p>
+   * The stream is first gathered into an array, in encounter order, so
+   * each EdgeSpec can be tagged with its index. Each shard sets its edges
+   * in order of their index, so where there are several EdgeSpecs for the
+   * same edge the last one wins, as with {@link #bulk_load(Stream)}. For
+   * undirected graphs, both directions of an edge are so given the same
+   * weight.
+   * <p>
+   * The array holds a reference to each EdgeSpec, 4 or 8 bytes each
+   * depending on the JVM, and gathering a stream of unknown size into it
+   * may transiently take twice that. The EdgeSpecs themselves are held
+   * until loading is done. Partitioning then takes a further 8 bytes per
+   * edge, or 16 for undirected graphs, in a single primitive array.
+   * <p>
+   * Simple graphs must check each edge against those already set, and
+   * are loaded with {@link #bulk_load(Stream)} instead.
+   * 
+   * @param edges The stream of edges to set.
+   */
+  public synchronized void parallel_load (Stream<? extends EdgeSpec<N,E>> edges) {
+    if (is_simple ()) {
+      bulk_load (edges);
+      return;
+    }
+    
+    final int nshards = ForkJoinPool.getCommonPoolParallelism () * 4;
+    final ConcurrentHashMap<N,Node<N,E>> created = new ConcurrentHashMap<> ();
+    final boolean directed = is_directed ();
+    final boolean tracked = track_predecessors;
+    
+    /* The index of other nodes would be updated from the shard of the
+     * node the edge is from, rebuild it afterward instead.
+     */
+    if (tracked)
+      track_predecessors (false);
+    
+    try {
+      @SuppressWarnings ("unchecked")
+      final EdgeSpec<N,E> [] specs
+        = (EdgeSpec<N,E> []) edges.toArray (EdgeSpec<?,?> []::new);
+      
+      /* Partition the indices of the specs by shard, with undirected edges
+       * as a pair of directed halves, the reverse half tagged in the low
+       * bit. The specs are split into chunks, and each chunk counts its
+       * tags for each shard. The counts then give the position of each
+       * chunk within each shard's range of the tags array, so the chunks
+       * can fill the array in parallel, and each shard's range ends up in
+       * index order without needing a sort.
+       */
+      final int nchunks = nshards;
+      final int chunk = (specs.length + nchunks - 1) / nchunks;
+      final int [][] at = new int [nchunks][nshards];
+      final int [] bounds = new int [nshards + 1];
+      long total = 0;
+      
+      IntStream.range (0, nchunks).parallel ().forEach (c -> {
+        int [] count = at[c];
+        int end = chunk_end (c, chunk, specs.length);
+        
+        for (int i = chunk_end (c - 1, chunk, specs.length); i < end; i++) {
+          EdgeSpec<N,E> s = specs[i];
+          
+          count[shard (s.from (), nshards)]++;
+          if (!directed && s.from () != s.to ())
+            count[shard (s.to (), nshards)]++;
+        }
+      });
+      
+      for (int sh = 0; sh < nshards; sh++) {
+        bounds[sh] = (int) total;
+        for (int c = 0; c < nchunks; c++) {
+          int n = at[c][sh];
+          at[c][sh] = (int) total;
+          total += n;
+        }
+        if (total > Integer.MAX_VALUE - 8)
+          throw new IllegalArgumentException ("too many edges to load");
+      }
+      bounds[nshards] = (int) total;
+      
+      final long [] tags = new long [(int) total];
+      
+      IntStream.range (0, nchunks).parallel ().forEach (c -> {
+        int [] pos = at[c];
+        int end = chunk_end (c, chunk, specs.length);
+        
+        for (int i = chunk_end (c - 1, chunk, specs.length); i < end; i++) {
+          EdgeSpec<N,E> s = specs[i];
+          
+          tags[pos[shard (s.from (), nshards)]++] = (long) i << 1;
+          if (!directed && s.from () != s.to ())
+            tags[pos[shard (s.to (), nshards)]++] = (long) i << 1 | 1;
+        }
+      });
+      
+      /* load each shard, in order of the specs. The nodes map is only
+       * read, until the merge.
+       */
+      IntStream.range (0, nshards).parallel ().forEach (sh -> {
+        for (int j = bounds[sh]; j < bounds[sh + 1]; j++) {
+          EdgeSpec<N,E> s = specs[(int) (tags[j] >>> 1)];
+          boolean rev = (tags[j] & 1) != 0;
+          N from = rev ? s.to () : s.from ();
+          N to = rev ? s.from () : s.to ();
+          Node<N,E> nf = parallel_node (from, created);
+          Node<N,E> nt = (to == from) ? nf : parallel_node (to, created);
+          
+          nf.set (nt, s.weight () > 0 ? s.weight () : 1, s.label ());
+        }
+      });
+    } finally {
+      /* merge */
+      if (created.size () > 0) {
+        HashMap<N,Node<N,E>> nn = new HashMap<N,Node<N,E>> (
+          (int) ((nodes.size () + created.size ()) / 0.75f) + 1);
+        nn.putAll (nodes);
+        nn.putAll (created);
+        nodes = nn;
+        nodeset = nodes.keySet ();
+        for (Node<N,E> n : created.values ())
+          id_alloc (n);
+      }
+      degree_rebuild ();
+      
+      if (tracked)
+        track_predecessors (true);
+      
+      setChanged ();
+      notifyObservers ();
+      edge_events.notifyObservers ();
+    }
+  }
+  
+  /* The end of the given chunk of the specs, for parallel_load */
+  private static int chunk_end (int c, int chunk, int len) {
+    return (int) Math.min (len, (long) (c + 1) * chunk);
+  }
+  
+  private static int shard (Object n, int nshards) {
+    int h = n.hashCode ();
+    return Math.floorMod (h ^ (h >>> 16), nshards);
+  }
+  
+  /* Find the Node for parallel_load, creating new Nodes in the 'created'
+   * map, to be merged in afterward.
+   */
+  private Node<N,E> parallel_node (N n, ConcurrentHashMap<N,Node<N,E>> created) {
+    Node<N,E> node = nodes.get (n);
+    
+    if (node != null)
+      return node;
+    
+    return created.computeIfAbsent (n, k -> new Node<N,E> (k));
+  }
+  
   /* Helper for _remove below, and big-stick "clear" type methods further on */
   protected boolean _remove (Node<N,E> nf, Node<N,E> nt, E label) {
+    int nd = nf.nodal_outdegree (), ed = nf.edge_outdegree ();
     boolean ret;
 
     setChanged ();
 
-    // Dispatch to appropriate method for label or lack of
-    ret = (label == null ? nf.remove (nt)
-                         : nf.remove (nt, label));
-    if (ret)
-      edge_events.notifyObservers (label);
+    if (label != null) {
+      if ((ret = nf.remove (nt, label))) {
+        degree_account (nf, nt, nd, ed);
+        edge_events.notifyObservers (label);
+      }
+      return ret;
+    }
+    
+    /* Removing all edges between the nodes. Notify for each edge removed,
+     * rather than a general notification, so Observers need only consider
+     * those edges.
+     */
+    if (!edge_events.has_observers ()) {
+      ret = nf.remove (nt);
+      degree_account (nf, nt, nd, ed);
+      return ret;
+    }
+    
+    List<Edge<N,E>> removed = new ArrayList<Edge<N,E>> (nf.edges (nt));
+    ret = nf.remove (nt);
+    degree_account (nf, nt, nd, ed);
+    for (Edge<N,E> e : removed)
+      edge_events.notifyObservers (e.label ());
     
     return ret;
   }
@@ -194,7 +547,59 @@ public class MultiDiGraph<N,E>
 
     return n.stream ();
   }
-  
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The snapshot is taken with the graph locked, and so is consistent
+   * with respect to concurrent writers.
+   */
+  @Override
+  public Stream<N> nodeStream () {
+    Object [] ns;
+
+    synchronized (this) {
+      ns = nodeset.toArray ();
+    }
+    @SuppressWarnings ("unchecked")
+    N [] snap = (N []) ns;
+    return StreamSupport.stream (
+      Spliterators.spliterator (snap, Spliterator.DISTINCT
+                                      | Spliterator.IMMUTABLE),
+      false);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * This takes a snapshot of all the edges of the graph with the graph
+   * locked, so the Stream is consistent with respect to concurrent
+   * writers, sees none of their later changes, and is SIZED and SUBSIZED
+   * by edges. The snapshot costs a reference per edge.
+   */
+  @Override
+  public Stream<Edge<N,E>> edgeStream () {
+    Edge<?,?> [] es;
+    int i = 0;
+
+    synchronized (this) {
+      es = new Edge<?,?> [(int) Math.min (edge_count, Integer.MAX_VALUE - 8)];
+      for (Node<N,E> n : nodes.values ())
+        for (Edge<N,E> e : n.edges ()) {
+          if (i == es.length)
+            es = Arrays.copyOf (es, i + (i >> 1) + 16);
+          es[i++] = e;
+        }
+    }
+    @SuppressWarnings ("unchecked")
+    Edge<N,E> [] snap = (Edge<N,E> []) es;
+    return StreamSupport.stream (
+      Spliterators.spliterator (snap, 0, i, Spliterator.DISTINCT
+                                            | Spliterator.IMMUTABLE
+                                            | Spliterator.NONNULL),
+      false);
+  }
+
   @Override
   public synchronized Collection<Edge<N,E>> edges (N from, N to) {
     Node<N,E> nf, nt;
@@ -233,9 +638,58 @@ public class MultiDiGraph<N,E>
     return null;
   }
 
+  /* Read-only view of the successors of a node, backed by the keys of its
+   * edgelist, so that queries need not allocate.
+   */
+  private class successor_set extends AbstractSet<N> {
+    final Node<N,E> n;
+    
+    successor_set (Node<N,E> n) {
+      this.n = n;
+    }
+    
+    @Override
+    public Iterator<N> iterator () {
+      return n.successor_iterator ();
+    }
+    
+    @Override
+    public int size () {
+      return n.nodal_outdegree ();
+    }
+    
+    @Override
+    @SuppressWarnings ("unchecked")
+    public boolean contains (Object o) {
+      Node<N,E> to;
+      
+      synchronized (MultiDiGraph.this) {
+        if ((to = nodes.get ((N) o)) != null)
+          return n.isLinked (to);
+      }
+      
+      /* edges to removed nodes may linger, see DESIGN.txt */
+      for (Iterator<N> it = iterator (); it.hasNext ();)
+        if (it.next ().equals (o))
+          return true;
+      return false;
+    }
+    
+    @Override
+    public void forEach (Consumer<? super N> c) {
+      n.forEachSuccessor (c);
+    }
+  }
+  
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The set is a view, which reflects later changes to the edges of the
+   * node. It must not be iterated over while the node's edges are 
+   * modified.
+   */
   @Override
   public synchronized Set<N> successors (N node) {
-    Set<N> sc = new HashSet<N> ();
     Node<N,E> n;
 
     assert node != null;
@@ -243,10 +697,19 @@ public class MultiDiGraph<N,E>
     if ((n = nodes.get (node)) == null)
       return null;
     
-    for (Edge<N,E> e : n.edges ())
-      sc.add (e.to());
+    if (n.successors == null)
+      n.successors = new successor_set (n);
     
-    return sc;
+    return n.successors;
+  }
+  
+  @Override
+  public synchronized void forEachSuccessor (N node,
+                                            Consumer<? super N> action) {
+    Node<N,E> n;
+    
+    if ((n = nodes.get (node)) != null)
+      n.forEachSuccessor (action);
   }
 
   @Override
@@ -261,38 +724,33 @@ public class MultiDiGraph<N,E>
   
   @Override
   public synchronized float avg_nodal_degree () {
-    float avg = 0;
-    int num = 0;
-    
-    for (Node<N,E> n : nodes.values ()) {
-      num++;
-      avg += (n.nodal_outdegree () - avg) / num;
-    }
-    return avg;
+    return nodes.isEmpty () ? 0 : (float) nodal_degree_sum / nodes.size ();
   }
   
+  /**
+   * {@inheritDoc}
+   * <p>
+   * For undirected graphs, each edge other than a self-loop is held as a
+   * pair of directed edges, and is counted once.
+   */
   @Override
   public synchronized long link_count () {
-    long num = 0;
-    
-    for (Node<N,E> n : nodes.values ()) {
-      num += n.nodal_outdegree ();
-    }
-    /* Euler: sum of degrees = 2 * edges */
-    return num/2;
+    return is_directed () ? edge_count : (edge_count + self_loops) / 2;
   }
   
   @Override
   public synchronized int max_nodal_degree () {
-    int max = 0;
-    int d;
-    
-    for (Node<N,E> n : nodes.values ()) {
-      if ((d = n.nodal_outdegree ()) > max)
-        max = d;
-    }
-    
-    return max;
+    return max_degree;
+  }
+  
+  /**
+   * @return A histogram of the nodal out-degrees of the nodes of the
+   *         graph, where the array indices correspond to the degree, and
+   *         the values to the number of nodes of that degree. The array
+   *         is a copy, and runs to {@link #max_nodal_degree()}.
+   */
+  public synchronized int [] degree_histogram () {
+    return Arrays.copyOf (degree_hist, max_degree + 1);
   }
   
   @Override
@@ -330,6 +788,54 @@ public class MultiDiGraph<N,E>
     };
   }
   
+  /* IntGraph interface */
+  
+  @Override
+  public int nodeId (N node) {
+    Node<N,E> n = nodes.get (node);
+    return n == null ? -1 : n.id;
+  }
+  
+  @Override
+  public N node (int id) {
+    Node<N,E> n;
+    
+    if (id < 0 || id >= id_bound || (n = byid[id]) == null)
+      return null;
+    
+    return n.unode;
+  }
+  
+  @Override
+  public int nodeIdBound () {
+    return id_bound;
+  }
+  
+  @Override
+  public int outDegree (int id) {
+    Node<N,E> n;
+    
+    if (id < 0 || id >= id_bound || (n = byid[id]) == null)
+      return 0;
+    
+    return n.edge_outdegree ();
+  }
+  
+  @Override
+  public void forEachEdge (int from, IntEdgeConsumer c) {
+    Node<N,E> n;
+    
+    if (from < 0 || from >= id_bound || (n = byid[from]) == null)
+      return;
+    
+    n.forEachEdge (c);
+  }
+  
+  @Override
+  public synchronized CsrGraph<N,E> freeze () {
+    return new CsrGraph<N,E> (this);
+  }
+  
   /* Collection/Set interfaces
    *
    * Ideally, we'd have just extended an existing Set class, however that
@@ -376,8 +882,15 @@ public class MultiDiGraph<N,E>
    */
   @Override
   public void clear () { 
+    for (Node<N,E> n : nodes.values ())
+      n.id = -1;
     nodes.clear ();
     
+    Arrays.fill (byid, 0, id_bound, null);
+    id_bound = 0;
+    free_count = 0;
+    degree_reset ();
+    
     setChanged ();
     
     notifyObservers ();
@@ -417,6 +930,7 @@ public class MultiDiGraph<N,E>
   public void clear_all_edges () {
     for (Node<N,E> n : nodes.values ())
       n.clear ();
+    degree_reset ();
     
     setChanged ();
     
@@ -452,9 +966,27 @@ public class MultiDiGraph<N,E>
         ret = true;
     }
     
+    /* With the predecessor index, edges into the node can be removed too,
+     * rather than left to linger.
+     */
+    if (node.in_edges != null)
+      for (Object oe : node.in_edges.toArray ()) {
+        Edge<N,E> e = (Edge<N,E>) oe;
+        if (remove (e.from (), e.to (), e.label ()))
+          ret = true;
+      }
+    
     notifyObservers (o);
     
-    return nodeset.remove (o) ? true : ret;
+    if (nodeset.remove (o)) {
+      id_release (node);
+      /* edges may linger to the node, but it should have none out */
+      degree_change (node.nodal_outdegree (), 0);
+      edge_count -= node.edge_outdegree ();
+      degree_hist[0]--;
+      return true;
+    }
+    return ret;
   }
   @Override
   public boolean removeAll (Collection<?> c) {
@@ -479,6 +1011,136 @@ public class MultiDiGraph<N,E>
     return size1 == size ();
   }
 
+  /**
+   * Set whether the graph maintains an index of the edges into each node,
+   * allowing the predecessors and in-edges of a node to be queried. 
+   * <p>
+   * The graph does not do so by default, so that edges need be recorded
+   * only at the node they leave from, see DESIGN.txt. With the index,
+   * each edge is also recorded at the node it goes to, at a cost in
+   * memory and in the time to set and remove edges. Removing a node then
+   * also removes the edges into it, rather than leaving them to linger.
+   * <p>
+   * Enabling the index builds it from the edges already in the graph.
+   * 
+   * @param on Whether to maintain the predecessor index.
+   * @return This graph.
+   */
+  public synchronized MultiDiGraph<N,E> track_predecessors (boolean on) {
+    if (on == track_predecessors)
+      return this;
+    
+    track_predecessors = on;
+    
+    for (Node<N,E> n : nodes.values ())
+      n.track_in (on);
+    if (on)
+      for (Node<N,E> n : nodes.values ())
+        n.index_out ();
+    
+    return this;
+  }
+  
+  /**
+   * @return Whether the graph maintains the predecessor index.
+   * @see #track_predecessors(boolean)
+   */
+  public synchronized boolean track_predecessors () {
+    return track_predecessors;
+  }
+  
+  /* Get the Node for a predecessor query, checking the index is enabled */
+  private Node<N,E> in_node (N node) {
+    if (!track_predecessors)
+      throw new IllegalStateException ("predecessors are not being tracked");
+    return nodes.get (node);
+  }
+  
+  /**
+   * The predecessor index must be enabled, see
+   * {@link #track_predecessors(boolean)}.
+   * 
+   * @param node The given node, which is to be queried.
+   * @return The set of nodes that precede the given node. I.e. those nodes
+   *         which have an edge to the given node. The returned set is a
+   *         read-only view. The set will be null if the node does not exist.
+   * @throws IllegalStateException if predecessors are not being tracked.
+   */
+  public synchronized Set<N> predecessors (N node) {
+    final Node<N,E> n;
+    
+    if ((n = in_node (node)) == null)
+      return null;
+    
+    return new AbstractSet<N> () {
+      @Override
+      public Iterator<N> iterator () {
+        final Iterator<Node<N,E>> it = n.in_nodes.keySet ().iterator ();
+        return new Iterator<N> () {
+          @Override
+          public boolean hasNext () {
+            return it.hasNext ();
+          }
+          @Override
+          public N next () {
+            return it.next ().unode;
+          }
+        };
+      }
+      @Override
+      public int size () {
+        return n.in_nodes.size ();
+      }
+    };
+  }
+  
+  /**
+   * The predecessor index must be enabled, see
+   * {@link #track_predecessors(boolean)}.
+   * 
+   * @param node The given node, which is to be queried.
+   * @return The set of edges that go in to the given node. The returned set
+   *         is a read-only view. The set will be null if the node does not
+   *         exist.
+   * @throws IllegalStateException if predecessors are not being tracked.
+   */
+  public synchronized Set<Edge<N,E>> in_edges (N node) {
+    Node<N,E> n;
+    
+    if ((n = in_node (node)) == null)
+      return null;
+    
+    return Collections.unmodifiableSet (n.in_edges);
+  }
+  
+  /**
+   * The predecessor index must be enabled, see
+   * {@link #track_predecessors(boolean)}.
+   * 
+   * @param node The given node, which is to be queried.
+   * @return The number of edges into the given node.
+   * @throws IllegalStateException if predecessors are not being tracked.
+   */
+  public synchronized int edge_indegree (N node) {
+    Node<N,E> n;
+    
+    return (n = in_node (node)) == null ? 0 : n.in_edges.size ();
+  }
+  
+  /**
+   * The predecessor index must be enabled, see
+   * {@link #track_predecessors(boolean)}.
+   * 
+   * @param node The given node, which is to be queried.
+   * @return The number of distinct nodes with edges into the given node.
+   * @throws IllegalStateException if predecessors are not being tracked.
+   */
+  public synchronized int nodal_indegree (N node) {
+    Node<N,E> n;
+    
+    return (n = in_node (node)) == null ? 0 : n.in_nodes.size ();
+  }
+  
   @Override
   public boolean is_directed () {
     return true;
@@ -46,15 +46,6 @@ public class MultiGraph<N,E> extends MultiDiGraph<N, E> {
     super._set (to, from, weight, label);
   }
 
-  @SuppressWarnings ("unchecked")
-  @Override
-  public boolean remove (Object o) {
-    for (Edge<N, E> edge : this.edges ((N) o))
-      if (!super._remove (edge.to (), edge.from (), edge.label ()))
-        throw new AssertionError ("Unable to remove other half of edge!");
-    return super.remove (o);
-  }
-
   @Override
   public boolean is_directed () {
     return false;
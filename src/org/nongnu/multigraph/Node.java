@@ -18,6 +18,7 @@
 package org.nongnu.multigraph;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.*;
 
 /**
@@ -50,6 +51,19 @@ class Node<N,E> {
   
   // convenience pointer to the user node object
   final N unode;
+  // IntGraph id of the node, -1 once the node is removed from its graph
+  int id = -1;
+  // cached successors view, see MultiDiGraph.successors
+  Set<N> successors = null;
+  
+  /* Reverse index of the edges into this node, maintained only when the
+   * graph tracks predecessors, null otherwise. See
+   * MultiDiGraph.track_predecessors.
+   *
+   * predecessor Node -> number of edges from it to this node
+   */
+  Map<Node<N,E>,Integer> in_nodes = null;
+  Set<Edge<N,E>> in_edges = null;
   
   Node (N node) {
     unode = node;
@@ -79,6 +93,32 @@ class Node<N,E> {
     
     all_edges.add ((e = new Edge<N,E> (this.unode, to.unode, weight, label)));
     to_edges.put (label, e);
+    to.add_in (this, e);
+  }
+  
+  /* Predecessor index maintenance */
+  void track_in (boolean on) {
+    in_nodes = on ? new HashMap<Node<N,E>,Integer> () : null;
+    in_edges = on ? new HashSet<Edge<N,E>> () : null;
+  }
+  
+  private void add_in (Node<N,E> from, Edge<N,E> e) {
+    if (in_edges == null || !in_edges.add (e))
+      return;
+    in_nodes.merge (from, 1, Integer::sum);
+  }
+  
+  private void remove_in (Node<N,E> from, Edge<N,E> e) {
+    if (in_edges == null || !in_edges.remove (e))
+      return;
+    in_nodes.computeIfPresent (from, (k, v) -> v > 1 ? v - 1 : null);
+  }
+  
+  /* Add the edges out of this node to the indices of the nodes they go to */
+  void index_out () {
+    for (Map.Entry<Node<N,E>,Map<E,Edge<N,E>>> me : edgelist.entrySet ())
+      for (Edge<N,E> e : me.getValue ().values ())
+        me.getKey ().add_in (this, e);
   }
 
   private boolean _remove (Node<N,E> to, E label, boolean clear,
@@ -97,6 +137,7 @@ class Node<N,E> {
     if ((label != null) && (to_edges.remove (label) != null)) {
       assert all_edges.size () > 0;
       boolean ret = all_edges.remove (e);
+      to.remove_in (this, e);
 
       /* If there are no more edges to the 'to' node, then remove
        * its entry from the general map of nodes
@@ -115,6 +156,8 @@ class Node<N,E> {
       return false;
     
     all_edges.removeAll (to_edges.values ());
+    for (Edge<N,E> te : to_edges.values ())
+      to.remove_in (this, te);
     to_edges.clear ();
 
     if (edgelist_it == null)
@@ -134,13 +177,7 @@ class Node<N,E> {
   // Removes all edges from this Node to 'to'
   boolean remove (Node<N,E> to) {
     assert to != null;
-    boolean ret = true;
-    
-    for (Edge<N,E> e : edges (to))
-      if (! _remove (to, e.label (), false, null))
-        ret = false;
-    
-    return ret;
+    return _remove (to, null, true, null);
   }
   
   /**
@@ -186,6 +223,42 @@ class Node<N,E> {
     return edges.values ();
   }
   
+  /* Call the IntGraph consumer for each edge, skipping any edges which
+   * linger to nodes that have been removed from the graph.
+   */
+  void forEachEdge (IntGraph.IntEdgeConsumer c) {
+    for (Map.Entry<Node<N,E>,Map<E,Edge<N,E>>> me : edgelist.entrySet ()) {
+      int to = me.getKey ().id;
+      
+      if (to < 0)
+        continue;
+      
+      for (Edge<N,E> e : me.getValue ().values ())
+        c.accept (id, to, e.weight ());
+    }
+  }
+  
+  /* Iterate over the user nodes this node has edges to */
+  Iterator<N> successor_iterator () {
+    final Iterator<Node<N,E>> it = edgelist.keySet ().iterator ();
+    
+    return new Iterator<N> () {
+      @Override
+      public boolean hasNext () {
+        return it.hasNext ();
+      }
+      @Override
+      public N next () {
+        return it.next ().unode;
+      }
+    };
+  }
+  
+  void forEachSuccessor (Consumer<? super N> c) {
+    for (Node<N,E> to : edgelist.keySet ())
+      c.accept (to.unode);
+  }
+  
   Stream<Edge<N,E>> stream () {
     return all_edges.stream ();
   }
@@ -6,6 +6,7 @@ import java.util.Iterator;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 /**
@@ -158,6 +159,11 @@ public class PartitionGraph<N,E> implements Graph<N,E>, Observer {
     return graph.successors (from);
   }
 
+  @Override
+  public void forEachSuccessor (N from, Consumer<? super N> action) {
+    graph.forEachSuccessor (from, action);
+  }
+
   @Override
   public Set<Edge<N,E>> edges (N from) {
     return graph.edges (from);
@@ -198,6 +204,11 @@ public class PartitionGraph<N,E> implements Graph<N,E>, Observer {
     return graph.random_edge_iterable (n);
   }
 
+  @Override
+  public CsrGraph<N,E> freeze () {
+    return graph.freeze ();
+  }
+
   @Override
   public void addObserver (Observer o) {
     graph.addObserver (o);
@@ -28,6 +28,38 @@ public class PluggableObservable extends Observable {
   private boolean plugObservable = false;
   private boolean notifyNull = false;
   private Set<Object> notifyObjs = new HashSet<Object> ();
+  /* Observer count, readable without taking the monitor */
+  private volatile int observers = 0;
+  
+  @Override
+  public synchronized void addObserver (Observer o) {
+    super.addObserver (o);
+    observers = super.countObservers ();
+  }
+  
+  @Override
+  public synchronized void deleteObserver (Observer o) {
+    super.deleteObserver (o);
+    observers = super.countObservers ();
+  }
+  
+  @Override
+  public synchronized void deleteObservers () {
+    super.deleteObservers ();
+    observers = 0;
+  }
+  
+  /**
+   * Whether there are any Observers, without taking the monitor of this
+   * Observable. The answer may be stale by the time the caller acts on it,
+   * so this is only useful to skip the work of notifying where there is
+   * nobody to notify, where missing a concurrently added Observer is
+   * acceptable.
+   * @return Whether any Observers are registered.
+   */
+  public boolean has_observers () {
+    return observers > 0;
+  }
   
   public synchronized void plugObservable () {
     plugObservable = true;
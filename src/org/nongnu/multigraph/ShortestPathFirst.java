@@ -18,9 +18,22 @@
 package org.nongnu.multigraph;
 import java.util.*;
 
+import org.nongnu.multigraph.layout.PositionableNode;
+import org.nongnu.multigraph.layout.Vector2D;
+
 /**
  * Dijkstra's Shortest Path First algoritm, implemented to act on a 
  * Graph of N-nodes and Edges, with L-labels
+ * <p>
+ * Optionally, the SPF tree may be maintained incrementally, see
+ * {@link #incremental(boolean)}, or repeated runs on the same graph may
+ * re-use their working state, see {@link #workspace(boolean)}.
+ * <p>
+ * Paths between a single pair of nodes may be found without building the
+ * whole tree, see {@link #path(Object, Object)} and
+ * {@link #astar_path(Object, Object, double)}. The tree itself may be
+ * limited to the neighbourhood of the root, see {@link #max_cost(int)},
+ * {@link #max_hops(int)} and {@link #run(Object, Collection)}.
  * 
  * @param N The type of the Nodes in the graph
  * @param E The type of the Edges in the graph
@@ -32,23 +45,39 @@ public class ShortestPathFirst<N,E> {
    * Could theoretically use a private instance of a Graph, but this
    * is more simple
    */
-  private class SPFnode<N,L> implements Comparable<SPFnode<N,L>> {
-    final N n;
-    LinkedList<Edge<N,L>> parents;
+  private class SPFnode<N,L> {
+    N n;
+    /* index of the SPFnode in the queue */
+    int idx;
+    final ArrayList<Edge<N,L>> parents = new ArrayList<Edge<N,L>> (2);
     int cost = 0;
+    /* hop-bounded runs: the number of edges in the path from the root,
+     * and, by the index of each parent edge, the SPFnode of the state of
+     * the parent that the edge extends.
+     */
+    int hops = 0;
+    ArrayList<SPFnode<N,L>> via;
+    /* incremental mode: number of out-edges recorded in the in_edges index */
+    int recorded = 0;
+    /* ECMP next-hops, as bits indexing nh_nodes */
+    BitSet nh;
     
     SPFnode (N n, Edge<N,L> path, int cost) {
+      reset (n, path, cost);
+    }
+    
+    /* (Re-)initialise, the SPFnode may be re-used in workspace mode */
+    void reset (N n, Edge<N,L> path, int cost) {
       this.n = n;
-      this.parents = new LinkedList<Edge<N,L>> ();
+      this.parents.clear ();
       if (path != null)
         this.parents.add (path);
       this.cost = cost;
-      debug.printf ("SPFnode: created %s\n", this);      
-    }
-    
-    @Override
-    public int compareTo (SPFnode<N,L> v) {
-      return this.cost - v.cost;
+      this.hops = 0;
+      this.via = null;
+      this.recorded = 0;
+      if (debug.applies ())
+        debug.printf ("SPFnode: created %s\n", this);
     }
     
     @Override
@@ -63,21 +92,84 @@ public class ShortestPathFirst<N,E> {
   /* Map of user Nodes->SPFnodes, i.e. nodes with a path from the root */
   private HashMap<N,SPFnode<N,E>> spfnodes;
   
-  private PriorityQueue<SPFnode<N,E>> q;
+  /* Queue of SPFnodes to explore, by index. Outside of workspace mode the
+   * index is the order in which the node was reached in the run.
+   */
+  private IntQueue q = new IntHeap (16);
+  private final ArrayList<SPFnode<N,E>> order = new ArrayList<> ();
   
   // convenience pointer back to the original graph
   final private Graph<N,E> g;
   private N root;
   
+  /* Incremental mode state.
+   *
+   * Edge events only give the label of the edge that changed, so index the
+   * edges relaxed by label. Labels of removed edges are kept, so that
+   * adding the edge back can be found. The relaxed edges are also indexed
+   * by the node they go to, to find the candidate parents of a node whose
+   * path has been lost.
+   */
+  private boolean incremental = false;
+  private Observer edge_observer = null;
+  private final Set<Object> pending = new HashSet<> ();
+  private boolean pending_all = false;
+  private HashMap<E,List<Edge<N,E>>> known = new HashMap<> ();
+  private HashMap<N,Set<Edge<N,E>>> in_edges = new HashMap<> ();
+  
+  /* Workspace mode state, indexed by the node ids of the graph.
+   *
+   * The SPFnodes are pooled by id and kept across runs. An SPFnode is in
+   * the current tree only if its stamp matches the generation of the
+   * current run, so nothing need be cleared between runs.
+   */
+  private IntGraph<N> ig = null;
+  private SPFnode<N,E> [] pool;
+  private int [] stamp;
+  private int generation = 0;
+  private int [] reached;
+  private int nreached = 0;
+  
+  /* ECMP next-hops: the neighbours of the root which are next-hops, the
+   * index of each being its bit in the next-hop sets of the SPFnodes.
+   * Computed on demand, for the current tree.
+   */
+  private final ArrayList<N> nh_nodes = new ArrayList<> ();
+  private boolean nh_valid = false;
+  
+  /* Bounds on the search, and the targets of the current run yet to be
+   * reached, if any.
+   */
+  private int max_cost = Integer.MAX_VALUE;
+  private int max_hops = Integer.MAX_VALUE;
+  private Set<N> targets = null;
+  
+  /* Hop-bounded runs: every SPFnode of the run, including the states of
+   * nodes by hops that are not the node's own SPFnode in the tree.
+   */
+  private final ArrayList<SPFnode<N,E>> hop_states = new ArrayList<> ();
+  private boolean hop_tree = false;
+  
   public ShortestPathFirst (Graph<N,E> g) {
     spfnodes = new HashMap<N,SPFnode<N,E>> ();
-    q = new PriorityQueue<SPFnode<N,E>> ();
     this.g = g;
     
     if (g == null)
       throw new IllegalArgumentException ("graph must not be null");
   }
   
+  /* Add a newly reached node to the tree and the queue */
+  private SPFnode<N,E> reach (N n, Edge<N,E> path, int cost) {
+    SPFnode<N,E> w = new SPFnode<N,E> (n, path, cost);
+    
+    w.idx = order.size ();
+    order.add (w);
+    spfnodes.put (n, w);
+    q.ensure_capacity (order.size ());
+    q.insert (w.idx, cost);
+    return w;
+  }
+  
   /* Explore the node V, adding its child nodes to the queue and relaxing
    * the SPFedges as needed.
    */
@@ -96,14 +188,21 @@ public class ShortestPathFirst<N,E> {
       
       debug.printf ("SPF: relaxing %s\n", e);
       
+      if (incremental)
+        record (v, e);
+      
+      if (e.weight() + v.cost > max_cost)
+        continue;
+      
       if ((w = spfnodes.get (e.to ())) == null) {
         /* W is newly discovered, init and queue */
-        w = new SPFnode<N,E> (e.to (), e, e.weight() + v.cost);
-        spfnodes.put (w.n, w);
-        q.add (w);
+        reach (e.to (), e, e.weight() + v.cost);
       } else if (e.weight() + v.cost < w.cost) { 
-        /* V->W is a better path, relax W onto V */
+        /* V->W is a better path, relax W onto V, decreasing its key in
+         * the queue.
+         */
         w.cost = e.weight() + v.cost;
+        q.insert (w.idx, w.cost);
         w.parents.clear();
         w.parents.add (e);
         debug.printf ("SPF: lower cost path found %s\n", w);
@@ -127,31 +226,276 @@ public class ShortestPathFirst<N,E> {
    * @param root Root node for the Shortest-Path First tree.
    */
   public void run (N root) {
+    run (root, null);
+  }
+  
+  /**
+   * Construct the SPF tree rooted at the given node, stopping as soon as
+   * all of the given target nodes have been reached, to be used for
+   * subsequent shortest-path query calls. The tree then holds only those
+   * nodes whose shortest paths are no more costly than the most costly of
+   * the targets, with all their equal-cost paths.
+   * <p>
+   * Targets which are not reachable, within any bound set with
+   * {@link #max_cost(int)}, do not stop the search early, nor do any
+   * targets where a bound is set with {@link #max_hops(int)}. Stopping
+   * early is not supported in incremental mode.
+   * 
+   * @param root Root node for the Shortest-Path First tree.
+   * @param targets Nodes to find the shortest paths to, or null to build
+   *                the whole tree.
+   * @throws IllegalStateException if targets are given in incremental
+   *         mode.
+   */
+  public void run (N root, Collection<? extends N> targets) {
     SPFnode<N,E> v;
     
     if (root == null)
       throw new IllegalArgumentException ("root argument must not be null");
+    if (targets != null && incremental)
+      throw new IllegalStateException ("SPF is in incremental mode");
     
     /* init */
     this.root = root;
+    nh_valid = false;
+    this.targets = targets == null ? null : new HashSet<N> (targets);
+    hop_tree = false;
+    hop_states.clear ();
+    
+    if (max_hops != Integer.MAX_VALUE) {
+      run_hop_bounded (root);
+      return;
+    }
+    
+    if (ig != null) {
+      run_workspace (root);
+      return;
+    }
+    
     spfnodes.clear ();
+    order.clear ();
     q.clear ();
     
-    /* initialise the root vertex, and seed the queue with its children */
+    if (incremental)
+      incremental_reset ();
+    
+    /* initialise the root vertex, and seed the queue with it */
     debug.println ("SPF: initialising");
-    spfnodes.put (root, (v = new SPFnode<N,E> (root, null, 0)));
-    explore (v);
+    reach (root, null, 0);
     
     /* go through the tree */
     debug.println ("SPF: Search the nodes");
-    while ((v = q.poll()) != null) {
+    while (!q.isEmpty ()) {
       /* increase search radius to the next vertex */
+      v = order.get (q.poll ());
+      
+      if (settled (v.n)) {
+        /* Drop the nodes still queued, their paths are not known */
+        while (!q.isEmpty ())
+          spfnodes.remove (order.get (q.poll ()).n);
+        break;
+      }
       explore (v);
+    }
+    order.clear ();
 
-    }    
     debug.println ("SPF: done");
   }
   
+  /* Hop-bounded search
+   *
+   * The cheapest path to a node within the hop bound may run through
+   * another node by a path that is not that node's own cheapest within
+   * the bound, e.g. where the cheapest path to the other node has more
+   * hops. The paths then do not form a tree of nodes, so the search is
+   * over the states of nodes by their hops from the root, as rounds of
+   * Bellman-Ford, one per hop. Round k relaxes the edges of the states
+   * of round k - 1, giving the states of nodes k hops from the root, which
+   * are kept only where no more costly than the node's states of fewer
+   * hops. Each state records, for each parent edge, the state of the
+   * parent it extends.
+   *
+   * The SPFnode of each node in the tree is then its least costly state,
+   * merged with any others of the same cost so as to have all the
+   * equal-cost paths.
+   */
+  private void run_hop_bounded (N root) {
+    HashMap<N,ArrayList<SPFnode<N,E>>> states = new HashMap<> ();
+    /* least cost of each node, over the states of the rounds so far */
+    HashMap<N,Integer> best = new HashMap<> ();
+    HashMap<N,SPFnode<N,E>> round = new HashMap<> ();
+    ArrayList<SPFnode<N,E>> prev = new ArrayList<> ();
+    SPFnode<N,E> rs = new SPFnode<N,E> (root, null, 0);
+    
+    hop_tree = true;
+    hop_states.add (rs);
+    best.put (root, 0);
+    prev.add (rs);
+    
+    for (int k = 1; k <= max_hops && !prev.isEmpty (); k++) {
+      for (SPFnode<N,E> u : prev) {
+        Set<Edge<N,E>> edges = g.edges (u.n);
+        
+        if (edges == null)
+          continue;
+        
+        for (Edge<N,E> e : edges) {
+          int cost = u.cost + e.weight ();
+          Integer b = best.get (e.to ());
+          SPFnode<N,E> w;
+          
+          if (cost > max_cost || (b != null && cost > b))
+            continue;
+          
+          if ((w = round.get (e.to ())) == null) {
+            w = new SPFnode<N,E> (e.to (), e, cost);
+            w.hops = k;
+            w.via = new ArrayList<> (2);
+            w.via.add (u);
+            round.put (e.to (), w);
+            continue;
+          }
+          if (cost < w.cost) {
+            w.cost = cost;
+            w.parents.clear ();
+            w.via.clear ();
+          } else if (cost > w.cost)
+            continue;
+          w.parents.add (e);
+          w.via.add (u);
+        }
+      }
+      
+      prev.clear ();
+      for (SPFnode<N,E> w : round.values ()) {
+        Integer b = best.get (w.n);
+        
+        if (b == null || w.cost < b)
+          best.put (w.n, w.cost);
+        states.computeIfAbsent (w.n, n -> new ArrayList<> (2)).add (w);
+        hop_states.add (w);
+        prev.add (w);
+      }
+      round.clear ();
+    }
+    
+    if (ig != null) {
+      workspace_begin ();
+      hop_tree_add (ig.nodeId (root), rs);
+    } else {
+      spfnodes.clear ();
+      spfnodes.put (root, rs);
+    }
+    
+    for (ArrayList<SPFnode<N,E>> ss : states.values ()) {
+      int min = best.get (ss.get (0).n);
+      SPFnode<N,E> m = null;
+      boolean copied = false;
+      
+      /* the states are in order of hops, so m has the fewest */
+      for (SPFnode<N,E> w : ss) {
+        if (w.cost != min)
+          continue;
+        if (m == null) {
+          m = w;
+          continue;
+        }
+        /* merge equal-cost states into a copy, as the states may be the
+         * parents of other states.
+         */
+        if (!copied) {
+          SPFnode<N,E> c = new SPFnode<N,E> (m.n, null, min);
+          
+          c.hops = m.hops;
+          c.parents.addAll (m.parents);
+          c.via = new ArrayList<> (m.via);
+          hop_states.add (c);
+          m = c;
+          copied = true;
+        }
+        m.parents.addAll (w.parents);
+        m.via.addAll (w.via);
+      }
+      
+      if (ig != null)
+        hop_tree_add (ig.nodeId (m.n), m);
+      else
+        spfnodes.put (m.n, m);
+    }
+  }
+  
+  /* Note the node is settled, returning true if it was the last target */
+  private boolean settled (N n) {
+    return targets != null && targets.remove (n) && targets.isEmpty ();
+  }
+  
+  /**
+   * Limit the SPF tree to nodes whose shortest paths cost no more than
+   * the given cost. Edges which would take a path beyond the cost are not
+   * followed, and so the search touches only the neighbourhood of the
+   * root. The paths within the tree are still shortest paths.
+   * <p>
+   * Bounds are not supported in incremental mode.
+   * 
+   * @param cost The maximum cost of a path, Integer.MAX_VALUE for no
+   *             limit.
+   * @return This ShortestPathFirst instance.
+   * @throws IllegalStateException if in incremental mode.
+   */
+  public ShortestPathFirst<N,E> max_cost (int cost) {
+    if (cost < 0)
+      throw new IllegalArgumentException ("cost must not be negative");
+    if (incremental && cost != Integer.MAX_VALUE)
+      throw new IllegalStateException ("SPF is in incremental mode");
+    max_cost = cost;
+    return this;
+  }
+  
+  /**
+   * @return The maximum cost of a path in the SPF tree.
+   */
+  public int max_cost () {
+    return max_cost;
+  }
+  
+  /**
+   * Limit the SPF tree to nodes within the given number of hops of the
+   * root, as a TTL would. Every node with a path of at most that many
+   * edges from the root is in the tree, and its paths in the tree are the
+   * least costly of those paths, which may cost more than its shortest
+   * paths, and run through other nodes by paths which are not their own
+   * least costly, e.g. where those have too many hops.
+   * <p>
+   * The search is then by rounds of Bellman-Ford, one per hop, over the
+   * states of nodes by their hops from the root, rather than by Dijkstra.
+   * This costs up to the product of the bound and the number of edges
+   * within it, and so suits small bounds. Targets given to
+   * {@link #run(Object, Collection)} do not stop the search early, and
+   * the whole tree within the bound is built.
+   * <p>
+   * Bounds are not supported in incremental mode.
+   * 
+   * @param hops The maximum number of edges in a path, Integer.MAX_VALUE
+   *             for no limit.
+   * @return This ShortestPathFirst instance.
+   * @throws IllegalStateException if in incremental mode.
+   */
+  public ShortestPathFirst<N,E> max_hops (int hops) {
+    if (hops < 0)
+      throw new IllegalArgumentException ("hops must not be negative");
+    if (incremental && hops != Integer.MAX_VALUE)
+      throw new IllegalStateException ("SPF is in incremental mode");
+    max_hops = hops;
+    return this;
+  }
+  
+  /**
+   * @return The maximum number of hops of a path in the SPF tree.
+   */
+  public int max_hops () {
+    return max_hops;
+  }
+  
   /**
    * Return the path from the root node to the 'to' node, as a List
    * of Edges, in the current SPF tree.
@@ -165,19 +509,20 @@ public class ShortestPathFirst<N,E> {
   public List<Edge<N,E>> path (N to) {
     SPFnode<N,E> s;
     LinkedList<Edge<N,E>> l = null;
-    Edge<N,E> e;
+    
+    update ();
     
     /* The SPF tree points from child to parent. Walk from 'to' till we get
      * to the root (which has no parents), building the path-List.
      */
-    while ((s = spfnodes.get (to)) != null && s.parents.size() > 0) {
+    for (s = spfnode (to); s != null && s.parents.size() > 0;
+         s = parent (s, 0)) {
       if (l == null)
         l = new LinkedList<Edge<N,E>> ();
       
       debug.println ("in path");
       /* Follow the first path, if there's more than one */
-      l.addFirst ((e = s.parents.getFirst ()));
-      to = e.from ();
+      l.addFirst (s.parents.get (0));
     }
     
     if (l != null)
@@ -196,20 +541,21 @@ public class ShortestPathFirst<N,E> {
   public Set<Edge<N,E>> edges (N to) {
     SPFnode<N,E> s;
     Set<Edge<N,E>> edges = null;
-    LinkedList<N> explore = new LinkedList<> ();
-    N n;
+    LinkedList<SPFnode<N,E>> explore = new LinkedList<> ();
+    
+    update ();
     
-    explore.add (to);
-    while ((n = explore.poll ()) != null) {      
-      if ((s = spfnodes.get (n)) == null || s.parents.size () == 0)
+    explore.add (spfnode (to));
+    while (!explore.isEmpty ()) {
+      if ((s = explore.poll ()) == null || s.parents.size () == 0)
         continue;
       
       if (edges == null)
         edges = new HashSet<Edge<N,E>> ();
       
-      for (Edge<N,E> e : s.parents) {
-        explore.add (e.from ());
-        edges.add (e);
+      for (int i = 0; i < s.parents.size (); i++) {
+        explore.add (parent (s, i));
+        edges.add (s.parents.get (i));
       }
     }    
     return edges;
@@ -223,7 +569,43 @@ public class ShortestPathFirst<N,E> {
   public Set<Edge<N,E>> edges () {
     Set<Edge<N,E>> edges = null;
     Edge<N,E> e;
-
+    
+    update ();
+    
+    if (hop_tree) {
+      /* the paths run through states which are not in the tree */
+      LinkedList<SPFnode<N,E>> explore = new LinkedList<> ();
+      Set<SPFnode<N,E>> seen
+        = Collections.newSetFromMap (new IdentityHashMap<> ());
+      SPFnode<N,E> s;
+      
+      if (ig != null)
+        for (int i = 0; i < nreached; i++)
+          explore.add (pool[reached[i]]);
+      else
+        explore.addAll (spfnodes.values ());
+      
+      while ((s = explore.poll ()) != null) {
+        if (edges == null)
+          edges = new HashSet<Edge<N,E>> ();
+        if (!seen.add (s))
+          continue;
+        edges.addAll (s.parents);
+        if (s.via != null)
+          explore.addAll (s.via);
+      }
+      return edges;
+    }
+    
+    if (ig != null) {
+      for (int i = 0; i < nreached; i++) {
+        if (edges == null)
+          edges = new HashSet<Edge<N,E>> ();
+        edges.addAll (pool[reached[i]].parents);
+      }
+      return edges;
+    }
+    
     for (SPFnode<N,E> s : spfnodes.values()) {
       if (edges == null)
         edges = new HashSet<Edge<N,E>> ();
@@ -242,18 +624,1068 @@ public class ShortestPathFirst<N,E> {
     SPFnode<N,E> s;
     N prev = null;
     
+    update ();
+    
     /* The SPF tree points from child to parent. Walk from 'to' till we get
      * to the root (which has no parents), building the path-List.
      */
-    while ((s = spfnodes.get (to)) != null && s.parents.size() > 0) {
+    for (s = spfnode (to); s != null && s.parents.size() > 0;
+         s = parent (s, 0)) {
       /* Follow the first path, if there's more than one */
-      prev = to;
-      to = s.parents.getFirst ().from ();
+      prev = s.n;
     }
     
     return prev;
   }
   
+  /* Compute the ECMP next-hop sets of every node in the tree, in one
+   * pass. Edge weights are positive, so parents cost strictly less than
+   * their children and cost order is a topological order of the tree: the
+   * next-hops of a node are the union of those of its parents, or the
+   * node itself where a parent is the root.
+   */
+  private void nexthops_compute () {
+    ArrayList<SPFnode<N,E>> tree = new ArrayList<> ();
+    HashMap<N,Integer> index = new HashMap<> ();
+    SPFnode<N,E> p;
+    
+    if (hop_tree)
+      tree.addAll (hop_states);
+    else if (ig != null)
+      for (int i = 0; i < nreached; i++)
+        tree.add (pool[reached[i]]);
+    else
+      tree.addAll (spfnodes.values ());
+    
+    tree.sort ((a, b) -> Integer.compare (a.cost, b.cost));
+    nh_nodes.clear ();
+    
+    for (SPFnode<N,E> s : tree) {
+      if (s.nh == null)
+        s.nh = new BitSet ();
+      else
+        s.nh.clear ();
+      
+      for (int j = 0; j < s.parents.size (); j++) {
+        Edge<N,E> e = s.parents.get (j);
+        
+        if (e.from ().equals (root)) {
+          Integer i = index.get (s.n);
+          
+          if (i == null) {
+            index.put (s.n, (i = nh_nodes.size ()));
+            nh_nodes.add (s.n);
+          }
+          s.nh.set (i);
+        } else if ((p = parent (s, j)) != null)
+          s.nh.or (p.nh);
+      }
+    }
+    nh_valid = true;
+  }
+  
+  private BitSet nexthops_of (N to) {
+    SPFnode<N,E> s;
+    
+    update ();
+    
+    if (!nh_valid && root != null)
+      nexthops_compute ();
+    
+    if ((s = spfnode (to)) == null || s.nh == null || s.nh.isEmpty ())
+      return null;
+    return s.nh;
+  }
+  
+  /**
+   * Return all the next-hop nodes for the equal-cost shortest paths from
+   * the root node to the given node.
+   * <p>
+   * The next-hops of every node in the tree are computed together, in one
+   * pass over the tree, on the first query after the tree is built or
+   * changed. Each query after that is just a look up.
+   * 
+   * @param to Destination node to query next-hops for
+   * @return The set of next-hops from the root, which are neighbours of
+   *         the root, or null if there is no path to the node, or it is
+   *         the root.
+   */
+  public Set<N> nexthops (N to) {
+    BitSet bits = nexthops_of (to);
+    Set<N> nhs;
+    
+    if (bits == null)
+      return null;
+    
+    nhs = new HashSet<N> ();
+    for (int i = bits.nextSetBit (0); i >= 0; i = bits.nextSetBit (i + 1))
+      nhs.add (nh_nodes.get (i));
+    return nhs;
+  }
+  
+  /**
+   * Return the next-hops for the equal-cost shortest paths from the root
+   * node to the given node, as a set of bits, with each bit being the
+   * index of a next-hop in {@link #nexthop_nodes()}. This is more compact
+   * than {@link #nexthops(Object)} where next-hops are wanted for many
+   * destinations, e.g. to build a routing table.
+   * 
+   * @param to Destination node to query next-hops for
+   * @return A copy of the next-hop set, or null if there is no path to the
+   *         node, or it is the root.
+   */
+  public BitSet nexthop_bits (N to) {
+    BitSet bits = nexthops_of (to);
+    return bits == null ? null : (BitSet) bits.clone ();
+  }
+  
+  /**
+   * @return The next-hop nodes of the current tree, indexed by their
+   *         bits in the sets of {@link #nexthop_bits(Object)}. The list is
+   *         read-only, and is only valid until the tree next changes.
+   */
+  public List<N> nexthop_nodes () {
+    update ();
+    
+    if (!nh_valid && root != null)
+      nexthops_compute ();
+    return Collections.unmodifiableList (nh_nodes);
+  }
+  
+  /* Point-to-point queries
+   *
+   * A search in one direction, forward from the source or backward from
+   * the destination, with its own tree and queue. The queue is keyed by
+   * cost, plus the heuristic for A*. Only a single parent is kept for
+   * each node.
+   */
+  private class p2p_search {
+    final HashMap<N,SPFnode<N,E>> reached = new HashMap<> ();
+    final ArrayList<SPFnode<N,E>> order = new ArrayList<> ();
+    IntQueue q;
+    /* cost of the node last polled, a lower bound on all those queued */
+    int last;
+    
+    void reset () {
+      reached.clear ();
+      order.clear ();
+      /* follow the choice of queue of the SPF */
+      if (q == null || (q instanceof IntRadixHeap) != radix_queue ())
+        q = radix_queue () ? new IntRadixHeap (16) : new IntHeap (16);
+      else
+        q.clear ();
+      last = 0;
+    }
+    
+    /* Relax the path to n, via e, returning n's SPFnode if it improved */
+    SPFnode<N,E> relax (N n, Edge<N,E> e, int cost, int key) {
+      SPFnode<N,E> s = reached.get (n);
+      
+      if (s == null) {
+        s = new SPFnode<N,E> (n, e, cost);
+        s.idx = order.size ();
+        order.add (s);
+        reached.put (n, s);
+      } else if (cost < s.cost) {
+        s.cost = cost;
+        s.parents.clear ();
+        s.parents.add (e);
+      } else
+        return null;
+      
+      q.ensure_capacity (order.size ());
+      q.insert (s.idx, key);
+      return s;
+    }
+    
+    SPFnode<N,E> poll () {
+      SPFnode<N,E> s = order.get (q.poll ());
+      last = s.cost;
+      return s;
+    }
+  }
+  
+  private p2p_search fwd, bwd;
+  
+  private p2p_search search (p2p_search s) {
+    if (s == null)
+      s = new p2p_search ();
+    s.reset ();
+    return s;
+  }
+  
+  /* The edges to follow backward from n, i.e. those into n, as edges from
+   * n in an undirected graph. Null if the graph can not provide them.
+   */
+  private Set<Edge<N,E>> in_edges (N n) {
+    if (!g.is_directed ())
+      return g.edges (n);
+    if (g instanceof MultiDiGraph
+        && ((MultiDiGraph<N,E>) g).track_predecessors ())
+      return ((MultiDiGraph<N,E>) g).in_edges (n);
+    return null;
+  }
+  
+  private boolean can_search_backward () {
+    return !g.is_directed ()
+           || (g instanceof MultiDiGraph
+               && ((MultiDiGraph<N,E>) g).track_predecessors ());
+  }
+  
+  /* The path from the source of the forward search to n, in order */
+  private LinkedList<Edge<N,E>> fwd_path (N n) {
+    LinkedList<Edge<N,E>> l = new LinkedList<> ();
+    SPFnode<N,E> s;
+    
+    while ((s = fwd.reached.get (n)) != null && !s.parents.isEmpty ()) {
+      Edge<N,E> e = s.parents.get (0);
+      l.addFirst (e);
+      n = e.from ();
+    }
+    return l;
+  }
+  
+  /**
+   * Find a shortest path between the given pair of nodes, without building
+   * the whole SPF tree. The search stops once the shortest path is known,
+   * which typically explores only a fraction of the graph.
+   * <p>
+   * Where the edges into a node can be found, the search is a
+   * bidirectional Dijkstra, forward from the source and backward from the
+   * destination, meeting in the middle. This is so for undirected graphs,
+   * and for a {@link MultiDiGraph} which is tracking predecessors, see
+   * {@link MultiDiGraph#track_predecessors(boolean)}. Otherwise, the
+   * search is forward from the source, and stops once the destination is
+   * reached.
+   * <p>
+   * This does not affect the SPF tree built by {@link #run(Object)}.
+   * 
+   * @param from The node to find a path from
+   * @param to The node to find a path to
+   * @return List of Edges forming a path, in order from 'from' to 'to',
+   *         which is empty if they are the same node, or null if there is
+   *         no path.
+   */
+  public List<Edge<N,E>> path (N from, N to) {
+    if (from == null || to == null)
+      throw new IllegalArgumentException ("nodes must not be null");
+    
+    if (!g.contains (from) || !g.contains (to))
+      return null;
+    if (from.equals (to))
+      return new LinkedList<Edge<N,E>> ();
+    
+    if (!can_search_backward ())
+      return astar (from, to, null, 0);
+    
+    fwd = search (fwd);
+    bwd = search (bwd);
+    fwd.relax (from, null, 0, 0);
+    bwd.relax (to, null, 0, 0);
+    
+    /* The cost of the best path seen so far, through the node 'meet' */
+    long mu = Long.MAX_VALUE;
+    N meet = null;
+    
+    /* Every path yet to be found costs at least the sum of the costs last
+     * polled in each direction, so once that reaches mu, mu is the least.
+     */
+    while (!fwd.q.isEmpty () && !bwd.q.isEmpty ()
+           && (long) fwd.last + bwd.last < mu) {
+      boolean forward = fwd.q.size () <= bwd.q.size ();
+      p2p_search d = forward ? fwd : bwd;
+      p2p_search other = forward ? bwd : fwd;
+      SPFnode<N,E> u = d.poll ();
+      Set<Edge<N,E>> edges = forward ? g.edges (u.n) : in_edges (u.n);
+      
+      if (edges == null)
+        continue;
+      
+      for (Edge<N,E> e : edges) {
+        /* e is from u, or into u for a directed backward search */
+        N x = (forward || !g.is_directed ()) ? e.to () : e.from ();
+        int cost = u.cost + e.weight ();
+        SPFnode<N,E> o;
+        
+        d.relax (x, e, cost, cost);
+        if ((o = other.reached.get (x)) != null
+            && (long) cost + o.cost < mu) {
+          mu = (long) cost + o.cost;
+          meet = x;
+        }
+      }
+    }
+    
+    if (meet == null)
+      return null;
+    
+    /* The forward half, then the backward half, whose edges point toward
+     * the destination, other than in an undirected graph.
+     */
+    LinkedList<Edge<N,E>> l = fwd_path (meet);
+    SPFnode<N,E> s;
+    N n = meet;
+    
+    while ((s = bwd.reached.get (n)) != null && !s.parents.isEmpty ()) {
+      Edge<N,E> e = s.parents.get (0);
+      
+      if (g.is_directed ()) {
+        l.add (e);
+        n = e.to ();
+      } else {
+        l.add (g.edge (e.to (), e.from (), e.label ()));
+        n = e.from ();
+      }
+    }
+    return l;
+  }
+  
+  /**
+   * Find a shortest path between the given pair of nodes with an A*
+   * search, which is directed toward the destination by the distance
+   * between the positions of the nodes.
+   * <p>
+   * The nodes must implement {@link PositionableNode}. The heuristic
+   * estimate of the cost from a node to the destination is the Euclidean
+   * distance between their positions, multiplied by the given scale. For
+   * the path to be a shortest path, the estimate must never exceed the
+   * true cost, which is so if the weight of every edge is at least the
+   * scale times its length. See {@link #astar_scale()} to find such a
+   * scale. A scale of 0 makes this a plain Dijkstra search, stopping at
+   * the destination.
+   * <p>
+   * This does not affect the SPF tree built by {@link #run(Object)}.
+   * 
+   * @param from The node to find a path from
+   * @param to The node to find a path to
+   * @param scale The scale from distances between positions to costs.
+   * @return List of Edges forming a path, in order from 'from' to 'to',
+   *         which is empty if they are the same node, or null if there is
+   *         no path.
+   * @throws IllegalArgumentException if the destination is not a
+   *         PositionableNode, or the scale is negative.
+   */
+  public List<Edge<N,E>> astar_path (N from, N to, double scale) {
+    if (from == null || to == null)
+      throw new IllegalArgumentException ("nodes must not be null");
+    if (!(to instanceof PositionableNode))
+      throw new IllegalArgumentException ("A* requires PositionableNodes");
+    if (scale < 0)
+      throw new IllegalArgumentException ("scale must not be negative");
+    
+    if (!g.contains (from) || !g.contains (to))
+      return null;
+    if (from.equals (to))
+      return new LinkedList<Edge<N,E>> ();
+    
+    return astar (from, to, ((PositionableNode) to).getPosition (), scale);
+  }
+  
+  /* The heuristic. Rounding down keeps it admissible, and consistent, as
+   * edge weights are integers.
+   */
+  private static int estimate (Object n, Vector2D target, double scale) {
+    if (target == null || scale == 0)
+      return 0;
+    if (!(n instanceof PositionableNode))
+      throw new IllegalArgumentException ("A* requires PositionableNodes");
+    
+    double d = scale * ((PositionableNode) n).getPosition ().distance (target);
+    return d >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) d;
+  }
+  
+  /* The A* queue key, the cost plus the estimate, saturating at
+   * MAX_VALUE rather than overflowing, as the estimate may be clamped
+   * to MAX_VALUE.
+   */
+  private static int astar_key (int cost, Object n, Vector2D target,
+                                double scale) {
+    int est = estimate (n, target, scale);
+    int max = Integer.MAX_VALUE;
+    
+    if (cost == max || est == max)
+      return max;
+    if (est >= (max - cost))
+      return max;
+    return cost + est;
+  }
+  
+  /* Forward search from 'from', stopping when 'to' is polled. With no
+   * target position, a plain Dijkstra.
+   */
+  private List<Edge<N,E>> astar (N from, N to, Vector2D target,
+                                 double scale) {
+    SPFnode<N,E> u;
+    
+    fwd = search (fwd);
+    fwd.relax (from, null, 0, astar_key (0, from, target, scale));
+    
+    while (!fwd.q.isEmpty ()) {
+      if ((u = fwd.poll ()).n.equals (to))
+        return fwd_path (to);
+      
+      Set<Edge<N,E>> edges = g.edges (u.n);
+      if (edges == null)
+        continue;
+      
+      for (Edge<N,E> e : edges) {
+        int cost = u.cost + e.weight ();
+        SPFnode<N,E> w = fwd.reached.get (e.to ());
+        
+        /* avoid the estimate for nodes which can not improve */
+        if (w != null && w.cost <= cost)
+          continue;
+        fwd.relax (e.to (), e, cost,
+                   astar_key (cost, e.to (), target, scale));
+      }
+    }
+    return null;
+  }
+  
+  /**
+   * Find the largest scale for which the A* heuristic of
+   * {@link #astar_path(Object, Object, double)} is admissible, i.e. the
+   * least ratio of weight to length over all the edges of the graph. This
+   * visits every edge, and so should be done once, and the scale kept for
+   * as long as the positions and weights of the graph are unchanged.
+   * 
+   * @return The largest admissible A* scale, or 0 if there are no edges
+   *         of non-zero length.
+   * @throws IllegalArgumentException if the nodes are not
+   *         PositionableNodes.
+   */
+  public double astar_scale () {
+    double scale = Double.POSITIVE_INFINITY;
+    
+    for (N n : g) {
+      Set<Edge<N,E>> edges = g.edges (n);
+      
+      if (edges == null)
+        continue;
+      for (Edge<N,E> e : edges) {
+        if (!(e.from () instanceof PositionableNode)
+            || !(e.to () instanceof PositionableNode))
+          throw new IllegalArgumentException ("A* requires "
+                                              + "PositionableNodes");
+        
+        double len = ((PositionableNode) e.from ()).getPosition ()
+                       .distance (((PositionableNode) e.to ()).getPosition ());
+        if (len > 0)
+          scale = Math.min (scale, e.weight () / len);
+      }
+    }
+    return scale == Double.POSITIVE_INFINITY ? 0 : scale;
+  }
+  
+  /* Workspace mode */
+  
+  /**
+   * Set whether repeated runs re-use their working state.
+   * <p>
+   * In workspace mode the state of the SPF is held in arrays indexed by
+   * the node ids of the graph, and the per-node state is pooled and kept
+   * from one run to the next. The cost of a node is decreased in place in
+   * an indexed heap, rather than by removing and re-adding it to a
+   * queue. Once the workspace has grown to the size of the graph, a run
+   * allocates no per-node or per-edge state of its own, which suits many
+   * runs from different roots over the same graph. The workspace grows
+   * as needed if the graph grows.
+   * <p>
+   * Workspace mode requires the graph to implement {@link IntGraph}, and
+   * can not be combined with incremental mode. Disabling it releases the
+   * workspace, and the current tree.
+   * 
+   * @param on Whether to re-use the working state across runs.
+   * @return This ShortestPathFirst instance.
+   * @throws IllegalArgumentException if the graph is not an IntGraph.
+   * @throws IllegalStateException if in incremental mode.
+   */
+  @SuppressWarnings ("unchecked")
+  public ShortestPathFirst<N,E> workspace (boolean on) {
+    if (on == (ig != null))
+      return this;
+    
+    if (on) {
+      if (!(g instanceof IntGraph))
+        throw new IllegalArgumentException ("workspace mode requires an "
+                                            + "IntGraph");
+      if (incremental)
+        throw new IllegalStateException ("SPF is in incremental mode");
+      ig = (IntGraph<N>) g;
+      spfnodes.clear ();
+    } else {
+      ig = null;
+      pool = null;
+      stamp = reached = null;
+      nreached = 0;
+    }
+    root = null;
+    return this;
+  }
+  
+  /**
+   * @return Whether the SPF re-uses its working state across runs.
+   */
+  public boolean workspace () {
+    return ig != null;
+  }
+  
+  /**
+   * Set whether to use a radix heap, rather than a 4-ary heap, to order
+   * the nodes to explore. The radix heap relies on edge weights being
+   * integers, and for small weights is generally the faster of the two.
+   * 
+   * @param on Whether to use a radix heap.
+   * @return This ShortestPathFirst instance.
+   */
+  public ShortestPathFirst<N,E> radix_queue (boolean on) {
+    if (on != radix_queue ())
+      q = on ? new IntRadixHeap (q.capacity ())
+             : new IntHeap (q.capacity ());
+    return this;
+  }
+  
+  /**
+   * @return Whether a radix heap is used to order the nodes to explore.
+   */
+  public boolean radix_queue () {
+    return q instanceof IntRadixHeap;
+  }
+  
+  /* The SPFnode that the i'th parent edge of s extends. After a
+   * hop-bounded run, this is the state of the parent with the hops of
+   * that path, which need not be the parent's own SPFnode in the tree.
+   */
+  private SPFnode<N,E> parent (SPFnode<N,E> s, int i) {
+    return s.via != null ? s.via.get (i)
+                         : spfnode (s.parents.get (i).from ());
+  }
+  
+  /* The SPFnode of the given node in the current tree, or null */
+  private SPFnode<N,E> spfnode (N n) {
+    if (ig == null)
+      return spfnodes.get (n);
+    
+    int id = ig.nodeId (n);
+    
+    if (stamp == null || id < 0 || id >= stamp.length
+        || stamp[id] != generation)
+      return null;
+    return pool[id];
+  }
+  
+  @SuppressWarnings ("unchecked")
+  private void workspace_ensure () {
+    int bound = ig.nodeIdBound ();
+    
+    if (pool != null && pool.length >= bound)
+      return;
+    
+    pool = pool == null
+           ? (SPFnode<N,E> []) new ShortestPathFirst<?,?>.SPFnode<?,?> [bound]
+           : Arrays.copyOf (pool, bound);
+    stamp = stamp == null ? new int [bound] : Arrays.copyOf (stamp, bound);
+    reached = new int [bound];
+    q.ensure_capacity (bound);
+  }
+  
+  /* Add the node to the tree of the current run */
+  private SPFnode<N,E> workspace_reach (int id, N n, Edge<N,E> path,
+                                        int cost) {
+    SPFnode<N,E> s = pool[id];
+    
+    if (s == null)
+      pool[id] = s = new SPFnode<N,E> (n, path, cost);
+    else
+      s.reset (n, path, cost);
+    
+    stamp[id] = generation;
+    reached[nreached++] = id;
+    return s;
+  }
+  
+  /* Start a new generation, which invalidates the previous tree */
+  private void workspace_begin () {
+    workspace_ensure ();
+    
+    /* On wrapping, the stamps must be cleared */
+    if (++generation == 0) {
+      Arrays.fill (stamp, 0);
+      generation = 1;
+    }
+    nreached = 0;
+    q.clear ();
+  }
+  
+  /* Add an SPFnode of a hop-bounded run to the tree of the workspace */
+  private void hop_tree_add (int id, SPFnode<N,E> s) {
+    if (id < 0)
+      return;
+    
+    pool[id] = s;
+    stamp[id] = generation;
+    reached[nreached++] = id;
+  }
+  
+  private void run_workspace (N root) {
+    int id;
+    
+    workspace_begin ();
+    
+    if ((id = ig.nodeId (root)) < 0)
+      return;
+    
+    workspace_reach (id, root, null, 0);
+    q.insert (id, 0);
+    
+    while (!q.isEmpty ()) {
+      SPFnode<N,E> v = pool[q.poll ()];
+      
+      if (settled (v.n)) {
+        workspace_drop_queued ();
+        break;
+      }
+      explore_workspace (v);
+    }
+  }
+  
+  /* Drop the nodes still queued from the tree, their paths are not known */
+  private void workspace_drop_queued () {
+    int n = 0;
+    
+    while (!q.isEmpty ())
+      stamp[q.poll ()] = generation - 1;
+    
+    for (int i = 0; i < nreached; i++)
+      if (stamp[reached[i]] == generation)
+        reached[n++] = reached[i];
+    nreached = n;
+  }
+  
+  /* As explore, but for the workspace state */
+  private void explore_workspace (SPFnode<N,E> v) {
+    Set<Edge<N,E>> edges;
+    
+    if ((edges = g.edges (v.n)) == null)
+      return;
+    
+    for (Edge<N,E> e : edges) {
+      int to = ig.nodeId (e.to ());
+      int cost = e.weight () + v.cost;
+      SPFnode<N,E> w;
+      
+      /* edges to removed nodes may linger, but the nodes have no id */
+      if (to < 0 || cost > max_cost)
+        continue;
+      
+      if (stamp[to] != generation) {
+        workspace_reach (to, e.to (), e, cost);
+        q.insert (to, cost);
+      } else if (cost < (w = pool[to]).cost) {
+        w.cost = cost;
+        w.parents.clear ();
+        w.parents.add (e);
+        q.insert (to, cost);
+      } else if (cost == w.cost) {
+        w.parents.add (e);
+      }
+    }
+  }
+  
+  /* Incremental SPF
+   *
+   * Changes to edges are collected from the edge events of the graph, and
+   * applied to the SPF tree when it is next queried, or on an explicit
+   * update (). The changed edges are first removed from the tree: any node
+   * which loses its last parent, and so its shortest path, is "affected",
+   * as are any nodes which lose their last parent to an affected node. The
+   * paths of only the affected nodes are then recalculated, from the edges
+   * into them from unaffected nodes. Finally, the changed edges that are in
+   * the graph are added back, as though newly discovered, and any
+   * improvement in cost is propagated from there. This is essentially the
+   * approach of Ramalingam and Reps, and of the incremental SPF of
+   * link-state routing protocols.
+   */
+  
+  /**
+   * Set whether the SPF tree is maintained incrementally. 
+   * <p>
+   * In incremental mode, the SPF observes the edge events of the graph,
+   * and on the next query after edges have been added, removed or had their
+   * weight changed, repairs only the affected parts of the tree, rather
+   * than the tree having to be rebuilt with {@link #run(Object)}. General
+   * events, such as from {@link Graph#clear_all_edges()}, cause the tree to
+   * be rebuilt in full.
+   * <p>
+   * Edge events identify edges only by label, and labels need not be
+   * unique. The edges of the tree with the labels given are looked up
+   * directly, and the nodes of the tree are then checked for any edges
+   * not already known, which costs a pass over the nodes of the tree,
+   * though not over their edges.
+   * <p>
+   * Incremental mode retains an index of the edges of the tree, and an
+   * Observer is registered with the graph. The mode must be disabled to
+   * release them.
+   * 
+   * @param on Whether to maintain the tree incrementally.
+   * @return This ShortestPathFirst instance.
+   */
+  public ShortestPathFirst<N,E> incremental (boolean on) {
+    if (on == incremental)
+      return this;
+    
+    if (on && ig != null)
+      throw new IllegalStateException ("SPF is in workspace mode");
+    if (on && (max_cost != Integer.MAX_VALUE || max_hops != Integer.MAX_VALUE))
+      throw new IllegalStateException ("SPF search is bounded");
+    
+    incremental = on;
+    
+    if (on) {
+      edge_observer = new Observer () {
+        @Override
+        public void update (Observable o, Object arg) {
+          synchronized (pending) {
+            if (arg == null)
+              pending_all = true;
+            else
+              pending.add (arg);
+          }
+        }
+      };
+      g.edge_events ().addObserver (edge_observer);
+      /* The existing tree, if any, has no index. Rebuild it. */
+      if (root != null)
+        run (root);
+    } else {
+      g.edge_events ().deleteObserver (edge_observer);
+      edge_observer = null;
+      incremental_reset ();
+    }
+    return this;
+  }
+  
+  /**
+   * @return Whether the SPF tree is maintained incrementally.
+   */
+  public boolean incremental () {
+    return incremental;
+  }
+  
+  private void incremental_reset () {
+    synchronized (pending) {
+      pending.clear ();
+      pending_all = false;
+    }
+    known.clear ();
+    in_edges.clear ();
+  }
+  
+  /* Index an edge out of the SPF node v, if not already */
+  private void record (SPFnode<N,E> v, Edge<N,E> e) {
+    Set<Edge<N,E>> in = in_edges.get (e.to ());
+    
+    if (in == null)
+      in_edges.put (e.to (), (in = new HashSet<> ()));
+    
+    if (!in.add (e))
+      return;
+    
+    v.recorded++;
+    
+    List<Edge<N,E>> l = known.get (e.label ());
+    if (l == null)
+      known.put (e.label (), (l = new ArrayList<> (2)));
+    if (!l.contains (e))
+      l.add (e);
+  }
+  
+  private boolean is_recorded (Edge<N,E> e) {
+    Set<Edge<N,E>> in = in_edges.get (e.to ());
+    return in != null && in.contains (e);
+  }
+  
+  private void unrecord (Edge<N,E> e) {
+    Set<Edge<N,E>> in = in_edges.get (e.to ());
+    SPFnode<N,E> s;
+    
+    if (in == null || !in.remove (e))
+      return;
+    
+    if ((s = spfnodes.get (e.from ())) != null)
+      s.recorded--;
+  }
+  
+  /* Priority queue entry for repairs, which may decrease the cost of a
+   * node already queued. Stale entries are skipped.
+   */
+  private static class repair_entry<N,E>
+                       implements Comparable<repair_entry<N,E>> {
+    final ShortestPathFirst<N,E>.SPFnode<N,E> s;
+    final int cost;
+    
+    repair_entry (ShortestPathFirst<N,E>.SPFnode<N,E> s) {
+      this.s = s;
+      this.cost = s.cost;
+    }
+    
+    @Override
+    public int compareTo (repair_entry<N,E> o) {
+      return Integer.compare (cost, o.cost);
+    }
+  }
+  
+  /* Relax e, from the node u, onto its 'to' node, for a repair. Returns
+   * the node if its cost improved, and it must be (re)queued.
+   */
+  private SPFnode<N,E> repair_relax (SPFnode<N,E> u, Edge<N,E> e) {
+    int cost = u.cost + e.weight ();
+    SPFnode<N,E> w = spfnodes.get (e.to ());
+    
+    if (w == null) {
+      w = new SPFnode<N,E> (e.to (), e, cost);
+      spfnodes.put (w.n, w);
+      return w;
+    }
+    
+    if (cost < w.cost) {
+      w.cost = cost;
+      w.parents.clear ();
+      w.parents.add (e);
+      return w;
+    }
+    
+    if (cost == w.cost && !w.parents.contains (e))
+      w.parents.add (e);
+    
+    return null;
+  }
+  
+  /* Remove the given edges, which may or may not still be in the graph,
+   * from the SPF tree and recalculate the paths for nodes which are left
+   * without any.
+   */
+  private void repair_remove (Collection<Edge<N,E>> changed) {
+    LinkedList<SPFnode<N,E>> explore = new LinkedList<> ();
+    Set<SPFnode<N,E>> affected = new HashSet<> ();
+    SPFnode<N,E> v;
+    
+    for (Edge<N,E> e : changed) {
+      unrecord (e);
+      
+      if ((v = spfnodes.get (e.to ())) != null
+          && v.parents.remove (e)
+          && v.parents.isEmpty ()
+          && affected.add (v))
+        explore.add (v);
+    }
+    
+    if (affected.isEmpty ())
+      return;
+    
+    /* Find all the nodes whose paths went through affected nodes. */
+    while ((v = explore.poll ()) != null) {
+      Set<Edge<N,E>> edges = g.edges (v.n);
+      
+      if (edges == null)
+        continue;
+      
+      for (Edge<N,E> e : edges) {
+        SPFnode<N,E> c = spfnodes.get (e.to ());
+        
+        if (c != null && !affected.contains (c)
+            && c.parents.remove (e) && c.parents.isEmpty ()) {
+          affected.add (c);
+          explore.add (c);
+        }
+      }
+    }
+    
+    debug.printf ("SPF: %d nodes affected by removal\n", affected.size ());
+    
+    /* Recalculate their costs from the unaffected nodes */
+    PriorityQueue<repair_entry<N,E>> rq = new PriorityQueue<> ();
+    
+    for (SPFnode<N,E> a : affected) {
+      a.cost = Integer.MAX_VALUE;
+      a.parents.clear ();
+    }
+    for (SPFnode<N,E> a : affected) {
+      Set<Edge<N,E>> in = in_edges.get (a.n);
+      
+      if (in == null)
+        continue;
+      
+      for (Edge<N,E> e : in) {
+        SPFnode<N,E> u = spfnodes.get (e.from ());
+        
+        if (u == null || affected.contains (u))
+          continue;
+        
+        int cost = u.cost + e.weight ();
+        if (cost < a.cost) {
+          a.cost = cost;
+          a.parents.clear ();
+          a.parents.add (e);
+        } else if (cost == a.cost)
+          a.parents.add (e);
+      }
+      if (a.cost < Integer.MAX_VALUE)
+        rq.add (new repair_entry<N,E> (a));
+    }
+    
+    /* Dijkstra, restricted to the affected nodes and the recorded edges */
+    Set<SPFnode<N,E>> settled = new HashSet<> ();
+    repair_entry<N,E> re;
+    while ((re = rq.poll ()) != null) {
+      v = re.s;
+      if (re.cost != v.cost || !settled.add (v))
+        continue;
+      
+      for (Edge<N,E> e : g.edges (v.n)) {
+        SPFnode<N,E> c = spfnodes.get (e.to ());
+        
+        if (c == null || !affected.contains (c) || settled.contains (c)
+            || !is_recorded (e))
+          continue;
+        
+        int cost = v.cost + e.weight ();
+        if (cost < c.cost) {
+          c.cost = cost;
+          c.parents.clear ();
+          c.parents.add (e);
+          rq.add (new repair_entry<N,E> (c));
+        } else if (cost == c.cost && !c.parents.contains (e))
+          c.parents.add (e);
+      }
+    }
+    
+    /* Whatever is left is no longer reachable */
+    for (SPFnode<N,E> a : affected) {
+      if (a.cost < Integer.MAX_VALUE)
+        continue;
+      
+      Set<Edge<N,E>> edges = g.edges (a.n);
+      if (edges != null)
+        for (Edge<N,E> e : edges)
+          unrecord (e);
+      spfnodes.remove (a.n);
+    }
+  }
+  
+  /* Add the given edges, which are in the graph, to the SPF tree and
+   * propagate any improvements in cost.
+   */
+  private void repair_add (Collection<Edge<N,E>> added) {
+    PriorityQueue<repair_entry<N,E>> rq = new PriorityQueue<> ();
+    SPFnode<N,E> u, w;
+    
+    for (Edge<N,E> e : added) {
+      if ((u = spfnodes.get (e.from ())) == null)
+        continue;
+      
+      record (u, e);
+      if ((w = repair_relax (u, e)) != null)
+        rq.add (new repair_entry<N,E> (w));
+    }
+    
+    repair_entry<N,E> re;
+    while ((re = rq.poll ()) != null) {
+      u = re.s;
+      if (re.cost != u.cost)
+        continue;
+      
+      Set<Edge<N,E>> edges = g.edges (u.n);
+      if (edges == null)
+        continue;
+      
+      for (Edge<N,E> e : edges) {
+        record (u, e);
+        if ((w = repair_relax (u, e)) != null)
+          rq.add (new repair_entry<N,E> (w));
+      }
+    }
+  }
+  
+  /**
+   * Apply any changes to the graph, made since the SPF tree was last
+   * built or updated, to the SPF tree. This is done automatically by
+   * the query methods, and is only needed in incremental mode.
+   */
+  @SuppressWarnings ("unchecked")
+  public void update () {
+    List<Object> labels;
+    boolean all;
+    
+    if (!incremental || root == null)
+      return;
+    
+    synchronized (pending) {
+      all = pending_all;
+      labels = new ArrayList<> (pending);
+      pending.clear ();
+      pending_all = false;
+    }
+    
+    if (all || !spfnodes.containsKey (root) || !g.contains (root)) {
+      debug.println ("SPF: general change, full run");
+      run (root);
+      return;
+    }
+    
+    if (labels.isEmpty ())
+      return;
+    
+    nh_valid = false;
+    
+    /* The edges as previously seen by the SPF, and as they now are in the
+     * graph.
+     */
+    List<Edge<N,E>> old_edges = new ArrayList<> ();
+    List<Edge<N,E>> cur_edges = new ArrayList<> ();
+    
+    for (Object o : labels) {
+      E label = (E) o;
+      List<Edge<N,E>> l = known.get (label);
+      
+      if (l == null)
+        continue;
+      
+      for (ListIterator<Edge<N,E>> it = l.listIterator (); it.hasNext ();) {
+        Edge<N,E> e = it.next ();
+        Edge<N,E> cur = g.edge (e.from (), e.to (), label);
+        
+        old_edges.add (e);
+        if (cur != null) {
+          cur_edges.add (cur);
+          it.set (cur);
+        } else
+          it.remove ();
+      }
+      if (l.isEmpty ())
+        known.remove (label);
+    }
+    
+    repair_remove (old_edges);
+    
+    /* Look for edges not yet seen, from nodes in the tree. Even a known
+     * label may now also be on an edge between some other pair of nodes,
+     * as labels need not be unique, so this can not be skipped.
+     */
+    for (SPFnode<N,E> s : new ArrayList<> (spfnodes.values ())) {
+      Set<Edge<N,E>> edges = g.edges (s.n);
+      
+      if (edges == null || edges.size () == s.recorded)
+        continue;
+      
+      for (Edge<N,E> e : edges)
+        if (!is_recorded (e))
+          cur_edges.add (e);
+    }
+    
+    repair_add (cur_edges);
+  }
+  
   public N root () {
     return root;
   }
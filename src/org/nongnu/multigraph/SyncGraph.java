@@ -1,249 +1,599 @@
-/*
- * To change this template, choose Tools | Templates
- * and open the template in the editor.
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
  */
 
 package org.nongnu.multigraph;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Observable;
 import java.util.Observer;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
+ * Thread-safe wrapper around any Graph, guarding it with a read/write lock.
+ * <p>
+ * Queries take the read lock, so may proceed in parallel with each other,
+ * e.g. SPF runs and metrics over the graph. Modifications take the write
+ * lock, and so exclude all readers and other writers.
+ * <p>
+ * Collections, Iterators and Streams returned by the wrapper are snapshots,
+ * copied while the read lock is held, and so will not reflect any later
+ * changes to the graph. This makes them safe to use without further
+ * locking, but at the cost of a copy. Removal through the node Iterator
+ * is supported, and is passed on to the graph under the write lock.
+ * <p>
+ * Observers are notified with the write lock held, by the writing thread.
+ * Observers may query the graph from the notification, but must not wait on
+ * other threads that need the lock.
+ * <p>
+ * The wrapped graph must not be accessed other than through the wrapper.
  *
- * @author paul
+ * @param N The type of the Nodes in the graph
+ * @param E The type of the Edges in the graph
  */
 public class SyncGraph<N,E> implements Graph<N,E> {
-  private Graph<N,E> graph;
+  private final Graph<N,E> graph;
+  private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock ();
+  private final Lock r = rwl.readLock ();
+  private final Lock w = rwl.writeLock ();
 
   public SyncGraph (Graph<N,E> graph) {
+    if (graph == null)
+      throw new IllegalArgumentException ("graph must not be null");
     this.graph = graph;
   }
 
+  private static <T> Set<T> copy (Set<T> s) {
+    return s == null ? null
+                     : Collections.unmodifiableSet (new HashSet<T> (s));
+  }
+
+  /* Graph: modifications, under the write lock */
+
   @Override
-  public synchronized boolean is_directed () {
-    return graph.is_directed ();
+  public void set (N from, N to, E label) {
+    w.lock ();
+    try {
+      graph.set (from, to, label);
+    } finally {
+      w.unlock ();
+    }
   }
 
   @Override
-  public synchronized boolean is_simple () {
-    return graph.is_simple ();
+  public void set (N from, N to, E label, int weight) {
+    w.lock ();
+    try {
+      graph.set (from, to, label, weight);
+    } finally {
+      w.unlock ();
+    }
   }
 
   @Override
-  public synchronized void set (N from, N to, E label) {
-    graph.set (from, to, label);
+  public boolean add (N node) {
+    w.lock ();
+    try {
+      return graph.add (node);
+    } finally {
+      w.unlock ();
+    }
   }
 
   @Override
-  public synchronized void set (N from, N to, E label, int weight) {
-    graph.set (from, to, label, weight);
+  public boolean remove (N from, N to, E label) {
+    w.lock ();
+    try {
+      return graph.remove (from, to, label);
+    } finally {
+      w.unlock ();
+    }
   }
 
   @Override
-  public synchronized boolean add (N node) {
-    return graph.add (node);
+  public boolean remove (N from, N to) {
+    w.lock ();
+    try {
+      return graph.remove (from, to);
+    } finally {
+      w.unlock ();
+    }
   }
 
   @Override
-  public synchronized boolean remove (N from, N to, E label) {
-    return graph.remove (from, to, label);
+  public void bulk_load (Stream<? extends EdgeSpec<N,E>> edges) {
+    w.lock ();
+    try {
+      graph.bulk_load (edges);
+    } finally {
+      w.unlock ();
+    }
   }
 
   @Override
-  public synchronized boolean remove (N from, N to) {
-    return graph.remove (from, to);
+  public void clear_all_edges () {
+    w.lock ();
+    try {
+      graph.clear_all_edges ();
+    } finally {
+      w.unlock ();
+    }
   }
 
   @Override
-  public synchronized void clear_all_edges () {
-    graph.clear_all_edges ();
+  public void clear (N from) {
+    w.lock ();
+    try {
+      graph.clear (from);
+    } finally {
+      w.unlock ();
+    }
   }
 
+  /* Graph: queries, under the read lock */
+
   @Override
-  public synchronized int edge_outdegree (N node) {
-    return graph.edge_outdegree (node);
+  public boolean is_directed () {
+    return graph.is_directed ();
   }
 
   @Override
-  public synchronized int nodal_outdegree (N node) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public boolean is_simple () {
+    return graph.is_simple ();
   }
 
   @Override
-  public synchronized float avg_nodal_degree () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public int edge_outdegree (N node) {
+    r.lock ();
+    try {
+      return graph.edge_outdegree (node);
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized long link_count () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public int nodal_outdegree (N node) {
+    r.lock ();
+    try {
+      return graph.nodal_outdegree (node);
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized int max_nodal_degree () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public float avg_nodal_degree () {
+    r.lock ();
+    try {
+      return graph.avg_nodal_degree ();
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized Set<N> successors (N from) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public long link_count () {
+    r.lock ();
+    try {
+      return graph.link_count ();
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized Set<Edge<N, E>> edges (N from) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public int max_nodal_degree () {
+    r.lock ();
+    try {
+      return graph.max_nodal_degree ();
+    } finally {
+      r.unlock ();
+    }
   }
-  
+
   @Override
-  public synchronized Stream<Edge<N,E>> stream (N from) {
-    return graph.stream (from);
+  public Set<N> successors (N from) {
+    r.lock ();
+    try {
+      return copy (graph.successors (from));
+    } finally {
+      r.unlock ();
+    }
   }
-  
+
+  /* The action is called with the read lock held, so avoids a copy */
   @Override
-  public synchronized Collection<Edge<N, E>> edges (N from, N to) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public void forEachSuccessor (N from, Consumer<? super N> action) {
+    r.lock ();
+    try {
+      graph.forEachSuccessor (from, action);
+    } finally {
+      r.unlock ();
+    }
   }
-  
+
   @Override
-  public synchronized Edge<N, E> edge (N from, N to) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public Set<Edge<N,E>> edges (N from) {
+    r.lock ();
+    try {
+      return copy (graph.edges (from));
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized boolean is_linked (N from, N to) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public Stream<Edge<N,E>> stream (N from) {
+    Set<Edge<N,E>> edges = edges (from);
+    return edges == null ? null : edges.stream ();
   }
 
+  /* The default nodeStream snapshots via toArray, under the read lock.
+   * Edges are likewise copied in one go under the read lock, so the
+   * Stream is an atomic, SIZED snapshot of all the edges.
+   */
   @Override
-  public synchronized Edge<N, E> edge (N from, N to, E label) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public Stream<Edge<N,E>> edgeStream () {
+    Edge<?,?> [] es;
+
+    r.lock ();
+    try {
+      es = graph.edgeStream ().toArray (Edge<?,?> []::new);
+    } finally {
+      r.unlock ();
+    }
+    @SuppressWarnings ("unchecked")
+    Edge<N,E> [] snap = (Edge<N,E> []) es;
+    return StreamSupport.stream (
+      Spliterators.spliterator (snap, Spliterator.IMMUTABLE
+                                      | Spliterator.NONNULL),
+      false);
   }
 
   @Override
-  public synchronized Iterable<N> random_node_iterable () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public Collection<Edge<N,E>> edges (N from, N to) {
+    r.lock ();
+    try {
+      Collection<Edge<N,E>> edges = graph.edges (from, to);
+      return edges == null
+             ? null
+             : Collections.unmodifiableCollection (
+                 new ArrayList<Edge<N,E>> (edges));
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized Iterable<Edge<N, E>> random_edge_iterable (N n) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public Edge<N,E> edge (N from, N to) {
+    r.lock ();
+    try {
+      return graph.edge (from, to);
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized void addObserver (Observer o) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public boolean is_linked (N from, N to) {
+    r.lock ();
+    try {
+      return graph.is_linked (from, to);
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized int countObservers () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public Edge<N,E> edge (N from, N to, E label) {
+    r.lock ();
+    try {
+      return graph.edge (from, to, label);
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized void deleteObserver (Observer o) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public Iterable<N> random_node_iterable () {
+    return new Iterable<N> () {
+      @Override
+      public Iterator<N> iterator () {
+        ArrayList<N> al;
+        r.lock ();
+        try {
+          al = new ArrayList<N> (graph);
+        } finally {
+          r.unlock ();
+        }
+        Collections.shuffle (al);
+        return al.iterator ();
+      }
+    };
   }
 
   @Override
-  public synchronized void deleteObservers () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public Iterable<Edge<N,E>> random_edge_iterable (final N n) {
+    return new Iterable<Edge<N,E>> () {
+      @Override
+      public Iterator<Edge<N,E>> iterator () {
+        Set<Edge<N,E>> edges = edges (n);
+        ArrayList<Edge<N,E>> al = edges == null
+                                  ? new ArrayList<Edge<N,E>> ()
+                                  : new ArrayList<Edge<N,E>> (edges);
+        Collections.shuffle (al);
+        return al.iterator ();
+      }
+    };
   }
 
   @Override
-  public synchronized boolean hasChanged () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public CsrGraph<N,E> freeze () {
+    r.lock ();
+    try {
+      return graph.freeze ();
+    } finally {
+      r.unlock ();
+    }
   }
 
+  /* Observable: the Observables do their own locking */
+
   @Override
-  public synchronized void notifyObservers () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public void addObserver (Observer o) {
+    graph.addObserver (o);
   }
 
   @Override
-  public synchronized void notifyObservers (Object arg) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public int countObservers () {
+    return graph.countObservers ();
   }
 
   @Override
-  public synchronized void plugObservable () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public void deleteObserver (Observer o) {
+    graph.deleteObserver (o);
   }
 
   @Override
-  public synchronized void unplugObservable () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public void deleteObservers () {
+    graph.deleteObservers ();
   }
 
   @Override
-  public synchronized int size () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public boolean hasChanged () {
+    return graph.hasChanged ();
   }
 
   @Override
-  public synchronized boolean isEmpty () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public void notifyObservers () {
+    graph.notifyObservers ();
   }
 
   @Override
-  public synchronized boolean contains (Object o) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public void notifyObservers (Object arg) {
+    graph.notifyObservers (arg);
   }
 
   @Override
-  public synchronized Iterator<N> iterator () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public void plugObservable () {
+    graph.plugObservable ();
   }
 
+  /* Unplugging delivers the queued events, take the write lock so they are
+   * delivered under the same conditions as when not plugged.
+   */
   @Override
-  public synchronized Object[] toArray () {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public void unplugObservable () {
+    w.lock ();
+    try {
+      graph.unplugObservable ();
+    } finally {
+      w.unlock ();
+    }
   }
 
   @Override
-  public synchronized <T> T[] toArray (T[] ts) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public PluggableObservable edge_events () {
+    return graph.edge_events ();
   }
 
+  /* Set interface */
+
   @Override
-  public synchronized boolean remove (Object o) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public int size () {
+    r.lock ();
+    try {
+      return graph.size ();
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized boolean containsAll (Collection<?> clctn) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public boolean isEmpty () {
+    r.lock ();
+    try {
+      return graph.isEmpty ();
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized boolean addAll (Collection<? extends N> clctn) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public boolean contains (Object o) {
+    r.lock ();
+    try {
+      return graph.contains (o);
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized boolean retainAll (Collection<?> clctn) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public boolean containsAll (Collection<?> c) {
+    r.lock ();
+    try {
+      return graph.containsAll (c);
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized boolean removeAll (Collection<?> clctn) {
-    throw new UnsupportedOperationException ("Not supported yet.");
+  public Iterator<N> iterator () {
+    final Iterator<N> it;
+
+    r.lock ();
+    try {
+      it = new ArrayList<N> (graph).iterator ();
+    } finally {
+      r.unlock ();
+    }
+
+    return new Iterator<N> () {
+      N last = null;
+      @Override
+      public boolean hasNext () {
+        return it.hasNext ();
+      }
+      @Override
+      public N next () {
+        return (last = it.next ());
+      }
+      @Override
+      public void remove () {
+        if (last == null)
+          throw new IllegalStateException ();
+        SyncGraph.this.remove (last);
+        last = null;
+      }
+    };
   }
 
   @Override
-  public synchronized void clear () {
-    graph.clear ();
+  public Object[] toArray () {
+    r.lock ();
+    try {
+      return graph.toArray ();
+    } finally {
+      r.unlock ();
+    }
   }
 
   @Override
-  public synchronized void clear (N from) {
-    graph.clear (from);
+  public <T> T[] toArray (T[] ts) {
+    r.lock ();
+    try {
+      return graph.toArray (ts);
+    } finally {
+      r.unlock ();
+    }
   }
 
-  public PluggableObservable edge_events () {
-    return graph.edge_events ();
+  @Override
+  public boolean remove (Object o) {
+    w.lock ();
+    try {
+      return graph.remove (o);
+    } finally {
+      w.unlock ();
+    }
+  }
+
+  @Override
+  public boolean addAll (Collection<? extends N> c) {
+    w.lock ();
+    try {
+      return graph.addAll (c);
+    } finally {
+      w.unlock ();
+    }
+  }
+
+  @Override
+  public boolean retainAll (Collection<?> c) {
+    w.lock ();
+    try {
+      return graph.retainAll (c);
+    } finally {
+      w.unlock ();
+    }
+  }
+
+  @Override
+  public boolean removeAll (Collection<?> c) {
+    w.lock ();
+    try {
+      return graph.removeAll (c);
+    } finally {
+      w.unlock ();
+    }
+  }
+
+  @Override
+  public void clear () {
+    w.lock ();
+    try {
+      graph.clear ();
+    } finally {
+      w.unlock ();
+    }
+  }
+
+  @Override
+  public boolean equals (Object o) {
+    if (o == this)
+      return true;
+    r.lock ();
+    try {
+      return graph.equals (o);
+    } finally {
+      r.unlock ();
+    }
+  }
+
+  @Override
+  public int hashCode () {
+    r.lock ();
+    try {
+      return graph.hashCode ();
+    } finally {
+      r.unlock ();
+    }
+  }
+
+  @Override
+  public String toString () {
+    r.lock ();
+    try {
+      return graph.toString ();
+    } finally {
+      r.unlock ();
+    }
   }
 }
@@ -0,0 +1,239 @@
+package org.nongnu.multigraph.metrics;
+
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+
+import org.nongnu.multigraph.CsrGraph;
+import org.nongnu.multigraph.Graph;
+
+/**
+ * HyperANF, the approximate neighbourhood function of Boldi, Rosa and
+ * Vigna, for graphs too large for any exact method. The neighbourhood
+ * function gives the number of pairs of nodes within each distance, and
+ * so the distribution of distances, the effective diameter and the
+ * average distance. Distances are hop counts: edge weights are ignored.
+ * <p>
+ * Each node has a HyperLogLog counter of the set of nodes within t hops
+ * of it. Initially each counter holds just its own node, and each
+ * iteration takes the union of the counter of every node with the
+ * counters of its successors, so that after t iterations the counters
+ * estimate the balls of radius t. Iterations proceed until no counter
+ * changes. Nodes are updated in parallel, and only nodes with a successor
+ * whose counter changed in the previous iteration need be updated.
+ * <p>
+ * The counters of all the nodes are packed into one long[], with 8 bit
+ * registers, 8 to a long, which are merged 8 at a time with broadword
+ * operations. Two such arrays are needed, so memory is 2 x N x 2^log2m
+ * bytes, for a graph of N nodes. The relative standard deviation of each
+ * counter, and of the neighbourhood function, is at most about
+ * 1.04 / sqrt (2^log2m).
+ * 
+ * @author Paul Jakma
+ *
+ * @param <N> The type of the Nodes in the graph
+ * @param <E> The type of the Edges in the graph
+ */
+public class HyperANF<N,E> {
+  private static final long H = 0x8080808080808080L;
+  private static final long L = 0x0101010101010101L;
+  
+  private final Graph<N,E> graph;
+  private int log2m = 6;
+  private long seed = 0x5eed;
+  private int max_iterations = Integer.MAX_VALUE;
+  private int iterations = 0;
+  
+  public HyperANF (Graph<N,E> graph) {
+    if (graph == null)
+      throw new IllegalArgumentException ("graph must not be null");
+    this.graph = graph;
+  }
+  
+  /**
+   * @param log2m The log, base 2, of the number of registers of each
+   *              counter, from 4 to 16. Defaults to 6, i.e. 64 registers,
+   *              for a relative standard deviation of about 13%.
+   * @return This instance
+   */
+  public HyperANF<N,E> log2m (int log2m) {
+    if (log2m < 4 || log2m > 16)
+      throw new IllegalArgumentException ("log2m must be from 4 to 16");
+    this.log2m = log2m;
+    return this;
+  }
+  
+  /**
+   * @param seed The seed for the hashing of nodes to registers.
+   * @return This instance
+   */
+  public HyperANF<N,E> seed (long seed) {
+    this.seed = seed;
+    return this;
+  }
+  
+  /**
+   * @param max The maximum number of iterations, i.e. the greatest
+   *            distance to find the neighbourhood function to. By default
+   *            there is no limit, and iterations continue until the
+   *            counters stop changing.
+   * @return This instance
+   */
+  public HyperANF<N,E> max_iterations (int max) {
+    if (max < 0)
+      throw new IllegalArgumentException ("max must not be negative");
+    this.max_iterations = max;
+    return this;
+  }
+  
+  /**
+   * @return The number of iterations made by the last run.
+   */
+  public int iterations () {
+    return iterations;
+  }
+  
+  /**
+   * @return The relative standard deviation of the estimates.
+   */
+  public double relative_error () {
+    return 1.04 / Math.sqrt (1 << log2m);
+  }
+  
+  /* SplitMix64 finaliser */
+  private static long mix (long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+  
+  /* The bytewise maximum of x and y, whose bytes are all below 128 */
+  private static long max (long x, long y) {
+    long ge = (((x | H) - (y & ~H)) & H) >>> 7;
+    long mask = ge * 0xff;
+    return (x & mask) | (y & ~mask);
+  }
+  
+  /* The HyperLogLog estimate of the counter of w longs at offset o */
+  private double estimate (long [] c, int o, int w) {
+    final int m = 1 << log2m;
+    double sum = 0;
+    int zeros = 0;
+    
+    for (int i = o; i < o + w; i++) {
+      long l = c[i];
+      for (int b = 0; b < 8; b++, l >>>= 8) {
+        int r = (int) (l & 0xff);
+        sum += Double.longBitsToDouble ((1023L - r) << 52);
+        if (r == 0)
+          zeros++;
+      }
+    }
+    
+    double alpha = m == 16 ? 0.673
+                   : m == 32 ? 0.697
+                   : m == 64 ? 0.709
+                   : 0.7213 / (1 + 1.079 / m);
+    double e = alpha * m * m / sum;
+    
+    /* small range correction, by linear counting */
+    if (e <= 2.5 * m && zeros > 0)
+      e = m * Math.log ((double) m / zeros);
+    return e;
+  }
+  
+  /* Sum of the estimates of all the counters */
+  private double total (final long [] c, final int n, final int w) {
+    return IntStream.range (0, n).parallel ()
+             .mapToDouble (x -> estimate (c, x * w, w))
+             .sum ();
+  }
+  
+  /**
+   * Run HyperANF over a snapshot of the graph.
+   * 
+   * @return The neighbourhood function, with the estimated standard
+   *         deviation of each value as its error.
+   * @throws IllegalArgumentException if the graph is too large for the
+   *         counters to fit in an array.
+   */
+  public neighbourhood_function run () {
+    final CsrGraph<N,E> csr = graph.freeze ();
+    final int n = csr.nodeIdBound ();
+    final int w = (1 << log2m) / 8;
+    final int [] targets = csr.targets ();
+    
+    if ((long) n * w > Integer.MAX_VALUE - 8)
+      throw new IllegalArgumentException ("graph of " + n + " nodes too big"
+                                          + " for 2^" + log2m + " registers");
+    
+    long [] cur = new long [n * w];
+    long [] next = new long [n * w];
+    boolean [] changed = new boolean [n];
+    boolean [] changed_next = new boolean [n];
+    ArrayList<Double> pairs = new ArrayList<Double> ();
+    
+    /* Each counter starts with its own node */
+    for (int x = 0; x < n; x++) {
+      long h = mix (x ^ seed);
+      int reg = (int) (h >>> (64 - log2m));
+      int rho = Math.min (Long.numberOfLeadingZeros (h << log2m) + 1,
+                          64 - log2m + 1);
+      cur[x * w + reg / 8] |= (long) rho << (8 * (reg % 8));
+      changed[x] = true;
+    }
+    pairs.add (total (cur, n, w));
+    
+    iterations = 0;
+    while (iterations < max_iterations) {
+      final long [] c = cur, nx = next;
+      final boolean [] ch = changed, chn = changed_next;
+      
+      IntStream.range (0, n).parallel ().forEach (x -> {
+        int o = x * w;
+        boolean update = false;
+        
+        for (int e = csr.offset (x); e < csr.offset (x + 1) && !update; e++)
+          update = ch[targets[e]];
+        
+        System.arraycopy (c, o, nx, o, w);
+        chn[x] = false;
+        if (!update)
+          return;
+        
+        for (int e = csr.offset (x); e < csr.offset (x + 1); e++) {
+          int yo = targets[e] * w;
+          for (int i = 0; i < w; i++)
+            nx[o + i] = max (nx[o + i], c[yo + i]);
+        }
+        for (int i = 0; i < w; i++)
+          if (nx[o + i] != c[o + i]) {
+            chn[x] = true;
+            break;
+          }
+      });
+      
+      boolean any = false;
+      for (int x = 0; x < n && !any; x++)
+        any = changed_next[x];
+      if (!any)
+        break;
+      
+      iterations++;
+      cur = next;
+      next = c;
+      changed = changed_next;
+      changed_next = ch;
+      pairs.add (total (cur, n, w));
+    }
+    
+    double [] p = new double [pairs.size ()];
+    double [] err = new double [p.length];
+    
+    /* The function is non-decreasing, the estimates need not be */
+    for (int t = 0; t < p.length; t++) {
+      p[t] = t > 0 ? Math.max (p[t - 1], pairs.get (t)) : pairs.get (t);
+      err[t] = p[t] * relative_error ();
+    }
+    return new neighbourhood_function (p, err);
+  }
+}
@@ -1,10 +1,18 @@
 package org.nongnu.multigraph.metrics;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import org.nongnu.multigraph.AllPairsShortestPathFirst;
+import org.nongnu.multigraph.CsrGraph;
 import org.nongnu.multigraph.Edge;
 import org.nongnu.multigraph.Graph;
+import org.nongnu.multigraph.MultiDiGraph;
 import org.nongnu.multigraph.debug;
 
 /**
@@ -14,9 +22,35 @@ import org.nongnu.multigraph.debug;
  */
 public class TraversalMetrics {
   /**
-   * action callback interface, for each node of a graph */
+   * action callback interface, for each node of a graph.
+   * <p>
+   * A traversor which accumulates some result over the nodes may also
+   * support being split, into traversors which each accumulate the result
+   * for part of the graph, and whose results are then merged. Such
+   * traversors may be run in parallel, see
+   * {@link TraversalMetrics#parallel_traverse_graph}.
+   */
   public interface graph_traversor<N,E> {
     void node (N node);
+    
+    /**
+     * @return A new traversor of the same kind, with an empty result, to
+     *         accumulate the result for part of the graph, or null if this
+     *         traversor can not be split and must see every node itself.
+     */
+    default graph_traversor<N,E> split () {
+      return null;
+    }
+    
+    /**
+     * Combine the result of a traversor, given by {@link #split()}, into
+     * the result of this traversor.
+     * @param other A traversor split from this one, or from one split
+     *              from this one.
+     */
+    default void merge (graph_traversor<N,E> other) {
+      throw new UnsupportedOperationException ("traversor can not be merged");
+    }
   }
   
   /**
@@ -42,13 +76,151 @@ public class TraversalMetrics {
         gt.node (node);
   }
 
-  public class traversor_degree_distribution<N,E> implements graph_traversor<N,E> {
-
+  /**
+   * Traverse the graph with the given traversor, in parallel, if the
+   * traversor can be split, otherwise sequentially. The nodes of the graph
+   * are split between traversors split from the given one, each of which
+   * sees its nodes from a single thread, and the results are then merged
+   * into the given traversor. The nodes are split evenly from a snapshot,
+   * see {@link Graph#nodeStream()}.
+   * <p>
+   * The graph must not be modified during the traversal. Use a
+   * {@link org.nongnu.multigraph.SyncGraph} if it may be.
+   * 
+   * @param graph The graph to traverse
+   * @param gt The traversor, into which the results are merged.
+   */
+  public static <N,E> void parallel_traverse_graph (Graph<N,E> graph,
+                                                    graph_traversor<N,E> gt) {
+    if (gt.split () == null) {
+      traverse_graph (graph, gt);
+      return;
+    }
+    
+    gt.merge (graph.nodeStream ().parallel ()
+                .collect (gt::split,
+                          graph_traversor::node,
+                          graph_traversor::merge));
+  }
+  
+  /* Histogram of some integer value of the nodes, e.g. their degree */
+  private static abstract class traversor_histogram<N,E>
+                                implements graph_traversor<N,E> {
+    final Graph<N,E> graph;
+    int [] vals = new int [8];
+    int max = -1;
+    
+    traversor_histogram (Graph<N,E> graph) {
+      this.graph = graph;
+    }
+    
+    abstract int value (N node);
+    
+    void add (int v, int count) {
+      if (v >= vals.length)
+        vals = Arrays.copyOf (vals, Math.max (v + 1, vals.length * 2));
+      vals[v] += count;
+      max = Math.max (max, v);
+    }
+    
+    @Override
+    public void node (N node) {
+      add (value (node), 1);
+    }
+    
+    @Override
+    public void merge (graph_traversor<N,E> other) {
+      traversor_histogram<N,E> o = (traversor_histogram<N,E>) other;
+      
+      for (int v = o.max; v >= 0; v--)
+        if (o.vals[v] > 0)
+          add (v, o.vals[v]);
+    }
+    
+    /**
+     * @return The histogram, indexed by value, up to the greatest value
+     *         seen.
+     */
+    public int [] result () {
+      return Arrays.copyOf (vals, max + 1);
+    }
+  }
+  
+  /**
+   * Traversor to create a histogram of the nodal out-degree of the nodes
+   * traversed, see {@link #degree_distribution(Graph)}. May be split.
+   */
+  public static class traversor_degree_distribution<N,E>
+                      extends traversor_histogram<N,E> {
+    public traversor_degree_distribution (Graph<N,E> graph) {
+      super (graph);
+    }
+    
+    @Override
+    int value (N node) {
+      return graph.nodal_outdegree (node);
+    }
+    
+    @Override
+    public graph_traversor<N,E> split () {
+      return new traversor_degree_distribution<N,E> (graph);
+    }
+  }
+  
+  /**
+   * Traversor to create a histogram of the edge out-degree of the nodes
+   * traversed, see {@link #edge_degree_distribution(Graph)}. May be
+   * split.
+   */
+  public static class traversor_edge_degree_distribution<N,E>
+                      extends traversor_histogram<N,E> {
+    public traversor_edge_degree_distribution (Graph<N,E> graph) {
+      super (graph);
+    }
+    
+    @Override
+    int value (N node) {
+      return graph.edge_outdegree (node);
+    }
+    
+    @Override
+    public graph_traversor<N,E> split () {
+      return new traversor_edge_degree_distribution<N,E> (graph);
+    }
+  }
+  
+  /**
+   * Traversor to count the nodes accepted by a node_test, see
+   * {@link #parallel_count(Graph, node_test)}. May be split, in which
+   * case the test is called from several threads at once.
+   */
+  public static class traversor_count<N,E> implements graph_traversor<N,E> {
+    private final node_test<N> t;
+    private long count = 0;
+    
+    public traversor_count (node_test<N> t) {
+      this.t = t;
+    }
+    
     @Override
     public void node (N node) {
-      throw new UnsupportedOperationException ("Not supported yet.");
+      if (t.test (node))
+        count++;
     }
     
+    @Override
+    public graph_traversor<N,E> split () {
+      return new traversor_count<N,E> (t);
+    }
+    
+    @Override
+    public void merge (graph_traversor<N,E> other) {
+      count += ((traversor_count<N,E>) other).count;
+    }
+    
+    public long result () {
+      return count;
+    }
   }
 
   /**
@@ -61,14 +233,39 @@ public class TraversalMetrics {
    *         indices correspond to the degree.
    */
   public static <N,E> int [] degree_distribution (Graph<N,E> graph) {
-    int [] vals = new int [graph.max_nodal_degree () + 1];
+    /* MultiDiGraph maintains the histogram already */
+    if (graph instanceof MultiDiGraph)
+      return ((MultiDiGraph<N,E>) graph).degree_histogram ();
     
-    for (N node : graph)
-      vals[graph.nodal_outdegree (node)]++;
+    traversor_degree_distribution<N,E> t
+      = new traversor_degree_distribution<N,E> (graph);
+    int [] vals = new int [graph.max_nodal_degree () + 1];
     
+    parallel_traverse_graph (graph, t);
+    int [] res = t.result ();
+    System.arraycopy (res, 0, vals, 0, Math.min (res.length, vals.length));
     return vals;
   }
   
+  /**
+   * Traverse the Graph, in parallel, and create a histogram of the
+   * distribution of edge out-degree, i.e. counting each of multiple edges
+   * between the same pair of nodes.
+   * @param <N> The type of the nodes in the graph.
+   * @param <E> The type of the edges in the graph.
+   * @param graph The graph to traverse
+   * @return An integer array of the edge degree distribution, where the
+   *         array indices correspond to the degree, up to the greatest
+   *         degree.
+   */
+  public static <N,E> int [] edge_degree_distribution (Graph<N,E> graph) {
+    traversor_edge_degree_distribution<N,E> t
+      = new traversor_edge_degree_distribution<N,E> (graph);
+    
+    parallel_traverse_graph (graph, t);
+    return t.result ();
+  }
+  
   /**
    * Traverse the Graph and create a histogram of the normalised distribution
    * of nodal out-degree. I.e. the probability of a given degree, for that 
@@ -115,6 +312,25 @@ public class TraversalMetrics {
     return count;
   }
   
+  /**
+   * Traverse the graph in parallel and count those nodes which are
+   * accepted by the node_test callback, which must be safe to call from
+   * several threads at once.
+   * 
+   * @param <N> The type of the nodes in the graph.
+   * @param <E> The type of the edges in the graph.
+   * @param graph The graph to traverse
+   * @param t The boolean callback to apply to decide whether a node
+   *          should be counted or not.
+   * @return The number of nodes which match the provided test.
+   */
+  public static <N,E> long parallel_count (Graph<N,E> graph, node_test<N> t) {
+    traversor_count<N,E> tc = new traversor_count<N,E> (t);
+    
+    parallel_traverse_graph (graph, tc);
+    return tc.result ();
+  }
+  
   /**
    * Traverse the graph and count the number of edges.
    */
@@ -159,61 +375,613 @@ public class TraversalMetrics {
   }
   
   public static <N,E> dmap<N> FloydWarshal (final Graph<N,E> graph) {
-    dmap<N> dmap = new dmap<N> ();
+    dmap<N> dm = dmap.of (graph);
     
     for (N k : graph)
       for (N i : graph)
         for (N j : graph)
-          dmap.set (i, j, Math.min(FWdist (graph, dmap, i,j),
-                                   FWdplus (FWdist(graph, dmap, i, k), 
-                                            FWdist (graph, dmap, k, j))));
-    return dmap;
+          dm.set (i, j, Math.min(FWdist (graph, dm, i,j),
+                                 FWdplus (FWdist(graph, dm, i, k), 
+                                          FWdist (graph, dm, k, j))));
+    return dm;
+  }
+  
+  /* Block size for the blocked Floyd-Warshall, 3 blocks of 64x64 ints
+   * are 48KiB, which should mostly stay in the L1/L2 caches.
+   */
+  private static final int FW_BLOCK = 64;
+  
+  /* Relax the distances in rows [i0,i1) and columns [j0,j1) through the
+   * intermediate nodes [k0,k1).
+   */
+  private static void FWblock (final int [] d, final int n,
+                               int i0, int i1, int j0, int j1,
+                               int k0, int k1) {
+    for (int k = k0; k < k1; k++) {
+      int kn = k * n;
+      
+      for (int i = i0; i < i1; i++) {
+        int in = i * n;
+        int dik = d[in + k];
+        
+        if (dik == dmatrix.INF)
+          continue;
+        
+        for (int j = j0; j < j1; j++) {
+          int dkj = d[kn + j];
+          
+          if (dkj == dmatrix.INF)
+            continue;
+          
+          /* the sum overflows to negative, rather than absorbing to
+           * infinity as with FWdplus.
+           */
+          int w = dik + dkj;
+          if (w >= 0 && w < d[in + j])
+            d[in + j] = w;
+        }
+      }
+    }
+  }
+  
+  /**
+   * Calculate the shortest path distances between all pairs of nodes
+   * with the Floyd-Warshall algorithm, as with 
+   * {@link #FloydWarshal(Graph)}, but over a distance matrix held in an
+   * array, indexed by dense node ids.
+   * <p>
+   * The matrix is processed in tiles, so that the working set of each step
+   * fits in cache: the diagonal tile of each row of tiles is done first,
+   * then the other tiles of that row and column, and then all the remaining
+   * tiles, which depend only on the tiles of that row and column.
+   * <p>
+   * The graph must not be modified while the distance matrix is
+   * initialised from it.
+   * 
+   * @param graph The graph to calculate the distances of.
+   * @param parallel Whether to process the independent tiles of each step
+   *                 in parallel, in the common ForkJoinPool.
+   * @return The distance matrix.
+   */
+  public static <N,E> dmatrix<N> FloydWarshalMatrix (final Graph<N,E> graph,
+                                                     final boolean parallel) {
+    final dmatrix<N> dm = new dmatrix<N> (graph, true);
+    final int [] d = dm.d;
+    final int n = dm.n;
+    final int blocks = (n + FW_BLOCK - 1) / FW_BLOCK;
+    
+    for (int kb = 0; kb < blocks; kb++) {
+      final int k0 = kb * FW_BLOCK;
+      final int k1 = Math.min (k0 + FW_BLOCK, n);
+      final int kblock = kb;
+      
+      /* the diagonal tile, which depends only on itself */
+      FWblock (d, n, k0, k1, k0, k1, k0, k1);
+      
+      /* the tiles in the row and column of the diagonal tile */
+      IntStream s = IntStream.range (0, blocks);
+      (parallel ? s.parallel () : s).forEach (b -> {
+        if (b == kblock)
+          return;
+        int b0 = b * FW_BLOCK;
+        int b1 = Math.min (b0 + FW_BLOCK, n);
+        FWblock (d, n, k0, k1, b0, b1, k0, k1);
+        FWblock (d, n, b0, b1, k0, k1, k0, k1);
+      });
+      
+      /* the rest, by rows of tiles */
+      s = IntStream.range (0, blocks);
+      (parallel ? s.parallel () : s).forEach (ib -> {
+        if (ib == kblock)
+          return;
+        int i0 = ib * FW_BLOCK;
+        int i1 = Math.min (i0 + FW_BLOCK, n);
+        for (int jb = 0; jb < blocks; jb++) {
+          if (jb == kblock)
+            continue;
+          int j0 = jb * FW_BLOCK;
+          FWblock (d, n, i0, i1, j0, Math.min (j0 + FW_BLOCK, n), k0, k1);
+        }
+      });
+    }
+    return dm;
+  }
+  
+  /**
+   * Sequential version of {@link #FloydWarshalMatrix(Graph, boolean)}.
+   */
+  public static <N,E> dmatrix<N> FloydWarshalMatrix (final Graph<N,E> graph) {
+    return FloydWarshalMatrix (graph, false);
   }
   
+  /**
+   * Calculate statistics of the shortest path distances between all pairs
+   * of nodes: the max and avg distance, its stddev and stderr, and the
+   * radius and diameter of the graph. Unreachable pairs are not counted.
+   * <p>
+   * This is {@link #stats_spf(Graph)}, which gives the same results as
+   * {@link #stats(dmap, Graph)} over the distances, without needing them
+   * all in memory.
+   */
   public static <N,E> Map<String,Double> stats (final Graph<N,E> graph) {
-    return stats (FloydWarshal (graph), graph);
+    return stats_spf (graph);
   }
   
-  public static <N,E> Map<String,Double> stats (final dmap<N> dmap, final Graph<N,E> graph) {
-    Map<String, Double> results = new HashMap<String, Double> ();
-    double avg = 0, delta2 = 0;
-    int max = 0, num = 0;
+  /* Accumulator for the distance statistics, shared by the stats methods
+   * so the different representations give the same results. The mean and
+   * variance are kept with Welford's online algorithm, and accumulators
+   * may be merged, e.g. from different threads.
+   */
+  private static class dist_stats {
+    double avg = 0, m2 = 0;
+    long num = 0;
+    int max = 0;
     int radius = Integer.MAX_VALUE;
     int diameter = 0;
+    int eccentricity = 0;
     
-    for (Map.Entry<N,Map<N,Integer>> from : dmap.entrySet ()) {
-      int eccentricity = 0;
+    void add (int w) {
+      max = Math.max (max, w);
       
-      for (Map.Entry<N,Integer> to: from.getValue ().entrySet ()) {
-        int w = to.getValue ();
-        double delta = (double)w - avg;
-        max = Math.max (max, w);
-        
-        debug.printf ("%s -> %s: %d\n",
-                      from.getKey (), to.getKey (), w);
-        
-        if (w == 0)
-          continue;
+      if (w == 0)
+        return;
+      
+      double delta = (double)w - avg;
+      eccentricity = Math.max (eccentricity, w);
+      avg += delta / ++num;
+      m2 += delta * (w - avg);
+      
+      if (debug.applies ())
+        debug.printf ("w: %d, num %d, avg %4f, m2 %4f\n", w, num, avg, m2);
+    }
+    
+    void end_row () {
+      radius = Math.min (radius, eccentricity);
+      diameter = Math.max (diameter, eccentricity);
+      eccentricity = 0;
+    }
+    
+    /* Merge in the given accumulator, per Chan et al. */
+    void merge (dist_stats o) {
+      long n = num + o.num;
+      
+      if (o.num > 0) {
+        double delta = o.avg - avg;
+        avg += delta * o.num / n;
+        m2 += o.m2 + delta * delta * ((double) num * o.num / n);
+        num = n;
+      }
+      max = Math.max (max, o.max);
+      radius = Math.min (radius, o.radius);
+      diameter = Math.max (diameter, o.diameter);
+    }
+    
+    Map<String,Double> results () {
+      Map<String, Double> results = new HashMap<String, Double> ();
+      /* sample standard deviation */
+      double stddev = num > 1 ? Math.sqrt (m2 / (num - 1)) : 0;
+      results.put ("max", (double) max);
+      results.put ("avg", avg);
+      results.put ("stddev", stddev);
+      results.put ("stderr",stddev / Math.sqrt(num));
+      results.put ("radius", (double) radius);
+      results.put ("diameter", (double) diameter);
+      return results;
+    }
+  }
+  
+  public static <N,E> Map<String,Double> stats (final dmap<N> dmap, final Graph<N,E> graph) {
+    final dist_stats ds = new dist_stats ();
+    
+    dmap.traverse (new dmap.dist_visitor<N> () {
+      @Override
+      public void dist (N from, N to, int w) {
+        debug.printf ("%s -> %s: %d\n", from, to, w);
+        ds.add (w);
+      }
+      @Override
+      public void end_row (N from) {
+        ds.end_row ();
+      }
+    });
+    return ds.results ();
+  }
+  
+  /**
+   * Calculate the statistics of {@link #stats(dmap, Graph)} from a shortest
+   * path first run from every node, in parallel, without keeping the
+   * distances. The distances from each root are accumulated as soon as
+   * its run completes, into an accumulator for the worker thread, and the
+   * accumulators are merged at the end. The memory needed is only that of
+   * the runs in progress, so this suits graphs far too large for an
+   * all-pairs distance map. Each run costs O(E log N).
+   * 
+   * @param graph The graph to calculate the statistics of.
+   * @return The statistics, as for {@link #stats(dmap, Graph)}.
+   */
+  public static <N,E> Map<String,Double> stats_spf (final Graph<N,E> graph) {
+    final ConcurrentLinkedQueue<dist_stats> all
+      = new ConcurrentLinkedQueue<dist_stats> ();
+    final ThreadLocal<dist_stats> local = ThreadLocal.withInitial (() -> {
+      dist_stats ds = new dist_stats ();
+      all.add (ds);
+      return ds;
+    });
+    
+    new AllPairsShortestPathFirst<N,E> (graph)
+      .distances (false)
+      .run ((root, dist, nh) -> {
+        dist_stats ds = local.get ();
         
-        eccentricity = Math.max (eccentricity, w);
-        avg += delta / ++num;
-        delta2 += delta * (w - avg);
+        for (int w : dist)
+          if (w != Integer.MAX_VALUE)
+            ds.add (w);
+        ds.end_row ();
+      });
+    
+    dist_stats ds = new dist_stats ();
+    for (dist_stats o : all)
+      ds.merge (o);
+    return ds.results ();
+  }
+  
+  /* Approximations, from the SPF of only some of the nodes */
+  
+  /* z for a 2-sided 95% confidence interval */
+  private static final double Z95 = 1.96;
+  
+  /* The eccentricity of the root of a row, and its farthest node */
+  private static int [] eccentricity (int [] dist) {
+    int ecc = 0, far = -1;
+    
+    for (int j = 0; j < dist.length; j++)
+      if (dist[j] != Integer.MAX_VALUE && dist[j] >= ecc) {
+        ecc = dist[j];
+        far = j;
+      }
+    return new int [] { ecc, far };
+  }
+  
+  /* Run the SPF from one root, optionally copying its distances to 'out',
+   * and return its eccentricity and farthest node.
+   */
+  private static int [] sweep (AllPairsShortestPathFirst<?,?> apsp,
+                               int root, final int [] out) {
+    final int [][] ret = new int [1][];
+    
+    apsp.run (new int [] { root }, (r, dist, nh) -> {
+      if (out != null)
+        System.arraycopy (dist, 0, out, 0, dist.length);
+      ret[0] = eccentricity (dist);
+    });
+    return ret[0];
+  }
+  
+  /* Choose k distinct node ids of n, at random */
+  private static int [] sample (int n, int k, Random r) {
+    int [] ids = new int [n];
+    
+    for (int i = 0; i < n; i++)
+      ids[i] = i;
+    for (int i = 0; i < k; i++) {
+      int j = i + r.nextInt (n - i);
+      int t = ids[i];
+      ids[i] = ids[j];
+      ids[j] = t;
+    }
+    return Arrays.copyOf (ids, k);
+  }
+  
+  /**
+   * Calculate lower and upper bounds on the diameter of a graph, with
+   * only a few SPF runs, rather than one from every node.
+   * <p>
+   * A double sweep is done first: an SPF from the node of highest degree,
+   * u, then from the node farthest from it. The greatest eccentricity
+   * found is a lower bound on the diameter. For a directed graph no
+   * useful upper bound can be had this way, and sweeps continue from the
+   * farthest node of each previous sweep while the lower bound improves.
+   * <p>
+   * For an undirected graph, the iFUB algorithm of Crescenzi et al. then
+   * refines the bounds for the connected component of u. The eccentricity
+   * of every node is at most twice the eccentricity of u, and nodes are
+   * visited in decreasing distance from u. Once all nodes farther than D
+   * from u have been visited, any pair of the remaining nodes is no more
+   * than 2D apart, so the diameter is at most the greater of 2D and the
+   * greatest eccentricity yet found. The bounds usually meet after few
+   * sweeps. Nodes at similar distances from u are visited in parallel.
+   * <p>
+   * The results are:
+   * <ul>
+   * <li> "diameter_lower": a lower bound on the diameter.
+   * <li> "diameter_upper": an upper bound on the diameter of the component
+   *      of u, or infinity for a directed graph.
+   * <li> "radius_upper": an upper bound on the radius, the least
+   *      eccentricity of the nodes swept.
+   * <li> "sweeps": the number of SPF runs made.
+   * </ul>
+   * Eccentricities are over the reachable nodes, as for
+   * {@link #stats(dmap, Graph)}.
+   * 
+   * @param graph The graph to bound the diameter of.
+   * @param max_sweeps The maximum number of SPF runs to make. The bounds
+   *                   are exact if they meet within this.
+   * @return The bounds on the diameter and radius.
+   */
+  public static <N,E> Map<String,Double> diameter_bounds (
+                                           final Graph<N,E> graph,
+                                           int max_sweeps) {
+    final CsrGraph<N,E> csr = graph.freeze ();
+    final AllPairsShortestPathFirst<N,E> apsp
+      = new AllPairsShortestPathFirst<N,E> (csr).distances (false);
+    final int n = csr.nodeIdBound ();
+    final int [] bounds = { 0, Integer.MAX_VALUE }; /* diameter, radius */
+    Map<String,Double> results = new HashMap<String,Double> ();
+    double upper;
+    int sweeps = 0;
+    
+    max_sweeps = Math.max (max_sweeps, 2);
+    
+    if (n == 0) {
+      results.put ("diameter_lower", 0.0);
+      results.put ("diameter_upper", 0.0);
+      results.put ("radius_upper", 0.0);
+      results.put ("sweeps", 0.0);
+      return results;
+    }
+    
+    int u = 0;
+    for (int i = 1; i < n; i++)
+      if (csr.outDegree (i) > csr.outDegree (u))
+        u = i;
+    
+    /* the double sweep */
+    int [] du = new int [n];
+    int [] eu = sweep (apsp, u, du);
+    int [] e = eu;
+    sweeps++;
+    bounds[0] = bounds[1] = eu[0];
+    
+    do {
+      int lower = bounds[0];
+      
+      if (e[1] < 0)
+        break;
+      e = sweep (apsp, e[1], null);
+      sweeps++;
+      bounds[0] = Math.max (bounds[0], e[0]);
+      bounds[1] = Math.min (bounds[1], e[0]);
+      
+      if (!graph.is_directed () || bounds[0] == lower)
+        break;
+    } while (sweeps < max_sweeps);
+    
+    if (graph.is_directed ())
+      upper = Double.POSITIVE_INFINITY;
+    else {
+      /* iFUB, over the nodes reachable from u, farthest first */
+      int [] order = IntStream.range (0, n)
+                       .filter (i -> du[i] != Integer.MAX_VALUE)
+                       .boxed ()
+                       .sorted ((a, b) -> Integer.compare (du[b], du[a]))
+                       .mapToInt (Integer::intValue)
+                       .toArray ();
+      int batch = Math.max (1, ForkJoinPool.getCommonPoolParallelism ());
+      long ub = 2L * eu[0];
+      int i = 0;
+      
+      while (i < order.length && sweeps < max_sweeps) {
+        ub = Math.min (ub, Math.max (bounds[0], 2L * du[order[i]]));
+        if (bounds[0] >= ub)
+          break;
         
-        debug.printf ("w: %d, num %d, avg %4f, delta2 %4f\n",
-                      w, num, avg, delta2);
+        int [] roots = Arrays.copyOfRange (order, i,
+                         Math.min (order.length,
+                                   i + Math.min (batch, max_sweeps - sweeps)));
+        apsp.run (roots, (r, dist, nh) -> {
+          int ecc = eccentricity (dist)[0];
+          synchronized (bounds) {
+            bounds[0] = Math.max (bounds[0], ecc);
+            bounds[1] = Math.min (bounds[1], ecc);
+          }
+        });
+        sweeps += roots.length;
+        i += roots.length;
       }
-      radius = Math.min (radius, eccentricity);
-      diameter = Math.max (diameter, eccentricity);
+      
+      if (i == order.length)
+        ub = bounds[0];
+      else
+        ub = Math.min (ub, Math.max (bounds[0], 2L * du[order[i]]));
+      upper = ub;
     }
     
-    double stddev = Math.sqrt (avg /(Math.sqrt (num)));
-    results.put ("max", (double) max);
-    results.put ("avg", avg);
-    results.put ("stddev", stddev);
-    results.put ("stderr",stddev / Math.sqrt(num));
-    results.put ("radius", (double) radius);
-    results.put ("diameter", (double) diameter);
+    results.put ("diameter_lower", (double) bounds[0]);
+    results.put ("diameter_upper", upper);
+    results.put ("radius_upper", (double) bounds[1]);
+    results.put ("sweeps", (double) sweeps);
+    return results;
+  }
+  
+  /**
+   * Estimate the statistics of {@link #stats(dmap, Graph)} from an SPF run
+   * from each of a random sample of k nodes, in parallel, rather than
+   * from every node.
+   * <p>
+   * The average distance is estimated as the total of the sampled
+   * distances over their number, a ratio estimator. Its 95% confidence
+   * interval is calculated from the variation between the sampled roots,
+   * as the distances from the same root are not independent, and with
+   * the correction for sampling without replacement.
+   * <p>
+   * The results are:
+   * <ul>
+   * <li> "avg": the estimated average distance.
+   * <li> "avg_ci95": the half-width of the 95% confidence interval of the
+   *      average distance.
+   * <li> "stddev": the standard deviation of the sampled distances.
+   * <li> "diameter_lower": the greatest eccentricity of the roots, a lower
+   *      bound on the diameter.
+   * <li> "radius_upper": the least eccentricity of the roots, an upper
+   *      bound on the radius.
+   * <li> "samples": the number of roots.
+   * </ul>
+   * With k the number of nodes, the results are exact.
+   * 
+   * @param graph The graph to estimate the statistics of.
+   * @param k The number of roots to sample.
+   * @param r The source of randomness for the sample.
+   * @return The estimated statistics.
+   */
+  public static <N,E> Map<String,Double> sampled_stats (final Graph<N,E> graph,
+                                                        int k, Random r) {
+    final CsrGraph<N,E> csr = graph.freeze ();
+    final int n = csr.nodeIdBound ();
+    final int [] roots = sample (n, (k = Math.max (0, Math.min (k, n))), r);
+    final int [] pos = new int [n];
+    /* per root: the sum and number of its distances */
+    final double [] sum = new double [k];
+    final long [] num = new long [k];
+    final ConcurrentLinkedQueue<dist_stats> all
+      = new ConcurrentLinkedQueue<dist_stats> ();
+    final ThreadLocal<dist_stats> local = ThreadLocal.withInitial (() -> {
+      dist_stats ds = new dist_stats ();
+      all.add (ds);
+      return ds;
+    });
     
+    for (int i = 0; i < k; i++)
+      pos[roots[i]] = i;
+    
+    new AllPairsShortestPathFirst<N,E> (csr)
+      .distances (false)
+      .run (roots, (root, dist, nh) -> {
+        dist_stats ds = local.get ();
+        double s = 0;
+        long c = 0;
+        
+        for (int w : dist)
+          if (w != Integer.MAX_VALUE) {
+            ds.add (w);
+            if (w > 0) {
+              s += w;
+              c++;
+            }
+          }
+        ds.end_row ();
+        sum[pos[root]] = s;
+        num[pos[root]] = c;
+      });
+    
+    dist_stats ds = new dist_stats ();
+    for (dist_stats o : all)
+      ds.merge (o);
+    
+    /* the confidence interval of the ratio estimator */
+    double ci = 0;
+    if (k > 1 && ds.num > 0) {
+      double cbar = (double) ds.num / k;
+      double s2 = 0;
+      
+      for (int i = 0; i < k; i++) {
+        double d = sum[i] - ds.avg * num[i];
+        s2 += d * d;
+      }
+      s2 /= k - 1;
+      ci = Z95 * Math.sqrt ((1 - (double) k / n) * s2 / k) / cbar;
+    }
+    
+    Map<String,Double> results = new HashMap<String,Double> ();
+    results.put ("avg", ds.avg);
+    results.put ("avg_ci95", ci);
+    results.put ("stddev", ds.num > 1 ? Math.sqrt (ds.m2 / (ds.num - 1)) : 0);
+    results.put ("diameter_lower", (double) ds.diameter);
+    results.put ("radius_upper",
+                 (double) (k > 0 ? ds.radius : 0));
+    results.put ("samples", (double) k);
     return results;
   }
+  
+  /**
+   * Estimate the neighbourhood function of the graph from a breadth-first
+   * search from each of a random sample of k nodes, in parallel. The
+   * number of pairs within each distance is estimated by scaling up the
+   * number found from the sampled roots, with a 95% confidence interval
+   * from the variation between the roots, corrected for sampling without
+   * replacement. Distances are hop counts, as for {@link HyperANF}, and
+   * the weights of edges are ignored.
+   * <p>
+   * The cost is k searches, so the estimate is near-linear in the size of
+   * the graph. With k the number of nodes, the results are exact.
+   * 
+   * @param graph The graph to estimate the neighbourhood function of.
+   * @param k The number of roots to sample.
+   * @param r The source of randomness for the sample.
+   * @return The estimated neighbourhood function, with the half-width of
+   *         the 95% confidence interval as the error of each distance.
+   */
+  public static <N,E> neighbourhood_function sampled_neighbourhood (
+                                                final Graph<N,E> graph,
+                                                int k, Random r) {
+    final CsrGraph<N,E> csr = graph.freeze ();
+    final int n = csr.nodeIdBound ();
+    final int [] roots = sample (n, (k = Math.max (0, Math.min (k, n))), r);
+    final int [] targets = csr.targets ();
+    /* per root: the number of nodes at each distance */
+    final int [][] hist = new int [k][];
+    
+    IntStream.range (0, k).parallel ().forEach (i -> {
+      int [] queue = new int [n];
+      boolean [] seen = new boolean [n];
+      int [] h = new int [8];
+      int head = 0, tail = 0, d = 0;
+      
+      queue[tail++] = roots[i];
+      seen[roots[i]] = true;
+      
+      /* a level of the search, one hop further, at a time */
+      while (head < tail) {
+        int end = tail;
+        
+        if (d == h.length)
+          h = Arrays.copyOf (h, d * 2);
+        h[d++] = end - head;
+        
+        for (; head < end; head++)
+          for (int e = csr.offset (queue[head]);
+               e < csr.offset (queue[head] + 1); e++)
+            if (!seen[targets[e]]) {
+              seen[targets[e]] = true;
+              queue[tail++] = targets[e];
+            }
+      }
+      hist[i] = Arrays.copyOf (h, d);
+    });
+    
+    int max = 0;
+    for (int [] h : hist)
+      max = Math.max (max, h.length - 1);
+    
+    double [] pairs = new double [k > 0 ? max + 1 : 0];
+    double [] error = new double [pairs.length];
+    long [] cum = new long [k];
+    double fpc = n > 0 ? 1 - (double) k / n : 0;
+    
+    for (int t = 0; t < pairs.length; t++) {
+      double mean = 0, s2 = 0;
+      
+      for (int i = 0; i < k; i++) {
+        if (t < hist[i].length)
+          cum[i] += hist[i][t];
+        mean += cum[i];
+      }
+      mean /= k;
+      for (int i = 0; i < k; i++)
+        s2 += (cum[i] - mean) * (cum[i] - mean);
+      
+      pairs[t] = n * mean;
+      error[t] = k > 1 ? n * Z95 * Math.sqrt (fpc * s2 / (k - 1) / k) : 0;
+    }
+    return new neighbourhood_function (pairs, error);
+  }
 }
@@ -1,54 +1,75 @@
 package org.nongnu.multigraph.metrics;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import org.nongnu.multigraph.Graph;
 
 /**
- * Distance maps, from each node to every other node. Suitable for sparse
- * graphs.
+ * Distance maps, from each node to every other node. Distances are
+ * non-negative, and pairs of nodes with no distance set are at a distance
+ * of Integer.MAX_VALUE, i.e. unreachable.
+ * <p>
+ * There are dense, {@link dmatrix}, and sparse, {@link sparse_dmap},
+ * implementations, with {@link #of(Graph)} choosing between them by the
+ * size of the graph.
  * 
  * @author Paul Jakma
  *
  * @param <N>
  */
-public class dmap<N> {
-  private static final long serialVersionUID = 1L;
+public interface dmap<N> {
+  /**
+   * @return The distance between the nodes, or Integer.MAX_VALUE if none
+   *         has been set.
+   */
+  public int dist (N from, N to);
   
-  private Map<N, Map<N,Integer>> dmap = new HashMap<N, Map<N,Integer>> ();
+  /**
+   * Set the distance between the nodes, if it is less than any distance
+   * already set. Setting Integer.MAX_VALUE has no effect.
+   * @throws IllegalArgumentException if the distance is negative.
+   */
+  public void set (N from, N to, int w);
   
-  public int dist (N from, N to) {
-    Map<N,Integer> to_weights;
-    Integer w;
-    
-    if ((to_weights = dmap.get (from)) != null
-        && (w = to_weights.get (to)) != null)
-      return w.intValue ();
-    
-    return Integer.MAX_VALUE;
+  /**
+   * Callback for {@link dmap#traverse}.
+   */
+  public interface dist_visitor<N> {
+    /**
+     * Called for each pair of nodes with a distance set.
+     */
+    void dist (N from, N to, int w);
+    /**
+     * Called after all the distances from the given node have been
+     * visited.
+     */
+    default void end_row (N from) {}
   }
   
-  public void set (N from, N to, int w) {
-    Map<N,Integer> to_weights;
-    Integer oldw;
-    
-    if (w == Integer.MAX_VALUE)
-      return;
-    
-    if (w < 0)
-      throw new IllegalArgumentException ("weight " + w + " is less than 0");
-    
-    if ((to_weights = dmap.get (from)) == null) {
-      to_weights = new HashMap<N,Integer> ();
-      dmap.put (from, to_weights);
-    }
-    
-    if ((oldw = to_weights.get (to)) == null
-        || oldw.intValue () > w)
-      to_weights.put (to, w);
-  }
+  /**
+   * Visit every pair of nodes with a distance set. All distances from
+   * a node are visited together, followed by a call to 
+   * {@link dist_visitor#end_row}, though rows, and the distances within a
+   * row, are in no particular order.
+   * @param v The visitor to call.
+   */
+  public void traverse (dist_visitor<N> v);
+  
+  /**
+   * Nodes above which {@link #of(Graph)} uses a sparse map, as a
+   * dense matrix of this many nodes already takes 64MiB.
+   */
+  public static final int DENSE_MAX = 4096;
   
-  public Set<Map.Entry<N,Map<N,Integer>>> entrySet() {
-    return dmap.entrySet ();
+  /**
+   * Create an empty distance map, suited to the size of the graph: a
+   * dense matrix for graphs of up to {@link #DENSE_MAX} nodes, and a sparse
+   * map otherwise. A dense map covers only the nodes in the graph at the
+   * time it was created.
+   * @param graph The graph the distances will be of.
+   * @return An empty distance map.
+   */
+  public static <N,E> dmap<N> of (Graph<N,E> graph) {
+    if (graph.size () <= DENSE_MAX)
+      return new dmatrix<N> (graph);
+    return new sparse_dmap<N> ();
   }
 }
@@ -0,0 +1,204 @@
+package org.nongnu.multigraph.metrics;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.nongnu.multigraph.CsrGraph;
+import org.nongnu.multigraph.Graph;
+
+/**
+ * Dense distance map, from each node to every other node, held in a
+ * single array indexed by the dense ids of the nodes. Suitable for dense
+ * graphs, or graphs small enough that N<sup>2</sup> distances fit in 
+ * memory.
+ * <p>
+ * The matrix may be compacted to 16 bits per distance, with
+ * {@link #compact()}, where all distances are less than 65535, e.g. for
+ * hop-counts. Setting a greater distance on a compacted matrix widens it
+ * back to 32 bits.
+ * 
+ * @author Paul Jakma
+ *
+ * @param <N>
+ */
+public class dmatrix<N> implements dmap<N> {
+  static final int INF = Integer.MAX_VALUE;
+  static final char CHAR_INF = Character.MAX_VALUE;
+  
+  private final N [] nodes;
+  private final Map<N,Integer> index;
+  final int n;
+  /* distance from i to j is at [i * n + j], in one of these */
+  int [] d;
+  private char [] c;
+  
+  /**
+   * Create an empty distance matrix for the nodes currently in the given
+   * graph.
+   * @param graph The graph
+   */
+  public <E> dmatrix (Graph<N,E> graph) {
+    this (graph, false);
+  }
+  
+  /**
+   * Create a distance matrix for the nodes of the given graph, empty or,
+   * if edges is set, initialised with the least weight of the edges 
+   * between each pair of nodes, and 0 from each node to itself.
+   */
+  @SuppressWarnings ("unchecked")
+  <E> dmatrix (Graph<N,E> graph, boolean edges) {
+    CsrGraph<N,E> csr = graph.freeze ();
+    int [] targets = csr.targets ();
+    int [] weights = csr.weights ();
+    
+    n = csr.nodeIdBound ();
+    if ((long) n * n > Integer.MAX_VALUE - 8)
+      throw new IllegalArgumentException ("graph of " + n 
+                                          + " nodes too big for dmatrix");
+    
+    nodes = (N []) new Object [n];
+    index = new HashMap<N,Integer> (Math.max (16, (int) (n / 0.75f) + 1));
+    d = new int [n * n];
+    Arrays.fill (d, INF);
+    
+    for (int i = 0; i < n; i++) {
+      nodes[i] = csr.node (i);
+      index.put (nodes[i], i);
+      
+      if (!edges)
+        continue;
+      
+      d[i * n + i] = 0;
+      for (int e = csr.offset (i); e < csr.offset (i + 1); e++) {
+        int ij = i * n + targets[e];
+        d[ij] = Math.min (d[ij], weights[e]);
+      }
+    }
+  }
+  
+  /**
+   * @return The number of nodes in the matrix.
+   */
+  public int size () {
+    return n;
+  }
+  
+  /**
+   * @param i An index into the matrix.
+   * @return The node for the given index.
+   */
+  public N node (int i) {
+    return nodes[i];
+  }
+  
+  /**
+   * @param node A node.
+   * @return The index of the node in the matrix, or -1 if the node is
+   *         not in the matrix.
+   */
+  public int index (N node) {
+    Integer i = index.get (node);
+    return i == null ? -1 : i;
+  }
+  
+  /**
+   * @return Whether the matrix is held in 16 bits per distance.
+   */
+  public boolean compacted () {
+    return c != null;
+  }
+  
+  /**
+   * Hold the matrix in 16 bits per distance, if all the distances set
+   * are less than 65535, halving its memory.
+   * @return Whether the matrix is now compacted.
+   */
+  public boolean compact () {
+    if (c != null)
+      return true;
+    
+    for (int w : d)
+      if (w != INF && w >= CHAR_INF)
+        return false;
+    
+    c = new char [d.length];
+    for (int i = 0; i < d.length; i++)
+      c[i] = d[i] == INF ? CHAR_INF : (char) d[i];
+    d = null;
+    return true;
+  }
+  
+  private void widen () {
+    d = new int [c.length];
+    for (int i = 0; i < c.length; i++)
+      d[i] = c[i] == CHAR_INF ? INF : c[i];
+    c = null;
+  }
+  
+  private int get (int ij) {
+    if (c != null)
+      return c[ij] == CHAR_INF ? INF : c[ij];
+    return d[ij];
+  }
+  
+  public int dist (int from, int to) {
+    return get (from * n + to);
+  }
+  
+  @Override
+  public int dist (N from, N to) {
+    int i, j;
+    
+    if ((i = index (from)) < 0 || (j = index (to)) < 0)
+      return INF;
+    
+    return get (i * n + j);
+  }
+  
+  @Override
+  public void set (N from, N to, int w) {
+    int i, j;
+    
+    if (w == INF)
+      return;
+    
+    if (w < 0)
+      throw new IllegalArgumentException ("weight " + w + " is less than 0");
+    
+    if ((i = index (from)) < 0 || (j = index (to)) < 0)
+      throw new IllegalArgumentException ("node not in matrix");
+    
+    int ij = i * n + j;
+    if (get (ij) <= w)
+      return;
+    
+    if (c != null && w >= CHAR_INF)
+      widen ();
+    
+    if (c != null)
+      c[ij] = (char) w;
+    else
+      d[ij] = w;
+  }
+  
+  @Override
+  public void traverse (dist_visitor<N> v) {
+    for (int i = 0; i < n; i++) {
+      int in = i * n;
+      boolean row = false;
+      
+      for (int j = 0; j < n; j++) {
+        int w = get (in + j);
+        
+        if (w != INF) {
+          v.dist (nodes[i], nodes[j], w);
+          row = true;
+        }
+      }
+      if (row)
+        v.end_row (nodes[i]);
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package org.nongnu.multigraph.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.nongnu.multigraph.AllPairsShortestPathFirst;
+import org.nongnu.multigraph.CsrGraph;
+import org.nongnu.multigraph.Graph;
+
+/**
+ * Dense distance map held in a memory-mapped file, for all-pairs results
+ * too big for the heap. The file holds the N x N matrix of distances as
+ * 32 bit ints, in rows indexed by the ids of the nodes in a 
+ * {@link CsrGraph} snapshot of the graph, see {@link #graph()}. The 
+ * operating system pages rows in and out of memory as they are used, so
+ * filling the map a row at a time, and traversing it a row at a time, as
+ * {@link TraversalMetrics#stats(dmap, Graph)} does, need only keep a few
+ * rows in memory.
+ * <p>
+ * The file is mapped in segments of whole rows, each under 1GiB. 
+ * Distances are stored plus one, so that the zeroes of a new, sparse
+ * file are unreachable distances, and the file need not be initialised.
+ * <p>
+ * Rows for different nodes may be written concurrently, e.g. by the
+ * worker threads of {@link AllPairsShortestPathFirst#run(
+ * AllPairsShortestPathFirst.row_handler)}. See {@link #fill()}.
+ * 
+ * @author Paul Jakma
+ *
+ * @param <N>
+ */
+public class mapped_dmap<N> implements dmap<N>, Closeable {
+  private static final long SEGMENT_MAX = 1L << 30;
+  
+  private final CsrGraph<N,?> csr;
+  private final int n;
+  private final FileChannel fc;
+  private final int rows_per_segment;
+  private MappedByteBuffer [] maps;
+  private IntBuffer [] segments;
+  
+  /**
+   * Create a distance map for the nodes currently in the graph, backed by
+   * the given file, which is created or truncated.
+   * @param graph The graph.
+   * @param file The file to hold the distance matrix.
+   * @throws IOException If the file can not be created or mapped.
+   */
+  public <E> mapped_dmap (Graph<N,E> graph, Path file) throws IOException {
+    csr = graph.freeze ();
+    n = csr.nodeIdBound ();
+    rows_per_segment = (int) Math.max (1, SEGMENT_MAX / (4L * Math.max (1, n)));
+    
+    fc = FileChannel.open (file, StandardOpenOption.CREATE,
+                                 StandardOpenOption.READ,
+                                 StandardOpenOption.WRITE,
+                                 StandardOpenOption.TRUNCATE_EXISTING,
+                                 StandardOpenOption.SPARSE);
+    
+    int nsegs = (n + rows_per_segment - 1) / rows_per_segment;
+    maps = new MappedByteBuffer [nsegs];
+    segments = new IntBuffer [nsegs];
+    try {
+      for (int s = 0; s < nsegs; s++) {
+        long first = (long) s * rows_per_segment;
+        long rows = Math.min (rows_per_segment, n - first);
+        
+        maps[s] = fc.map (FileChannel.MapMode.READ_WRITE,
+                          first * n * 4, rows * n * 4);
+        maps[s].order (ByteOrder.nativeOrder ());
+        segments[s] = maps[s].asIntBuffer ();
+      }
+    } catch (IOException e) {
+      fc.close ();
+      throw e;
+    }
+  }
+  
+  /**
+   * @return The snapshot of the graph, giving the mapping between nodes
+   *         and their row and column indices in the matrix.
+   */
+  public CsrGraph<N,?> graph () {
+    return csr;
+  }
+  
+  private IntBuffer segment (int row) {
+    if (segments == null)
+      throw new IllegalStateException ("mapped_dmap is closed");
+    return segments[row / rows_per_segment];
+  }
+  
+  private int offset (int row, int col) {
+    return (row % rows_per_segment) * n + col;
+  }
+  
+  public int dist (int from, int to) {
+    int w = segment (from).get (offset (from, to));
+    return w == 0 ? Integer.MAX_VALUE : w - 1;
+  }
+  
+  @Override
+  public int dist (N from, N to) {
+    int i, j;
+    
+    if ((i = csr.nodeId (from)) < 0 || (j = csr.nodeId (to)) < 0)
+      return Integer.MAX_VALUE;
+    
+    return dist (i, j);
+  }
+  
+  @Override
+  public void set (N from, N to, int w) {
+    int i, j;
+    
+    if (w == Integer.MAX_VALUE)
+      return;
+    
+    if (w < 0)
+      throw new IllegalArgumentException ("weight " + w + " is less than 0");
+    
+    if ((i = csr.nodeId (from)) < 0 || (j = csr.nodeId (to)) < 0)
+      throw new IllegalArgumentException ("node not in map");
+    
+    if (w < dist (i, j))
+      segment (i).put (offset (i, j), w + 1);
+  }
+  
+  /**
+   * Write a whole row of the matrix, replacing any distances in it.
+   * Distinct rows may be written concurrently.
+   * @param from The id of the node the row is for.
+   * @param dist The distances from the node, by id, with Integer.MAX_VALUE
+   *             for unreachable nodes.
+   */
+  public void set_row (int from, int [] dist) {
+    IntBuffer seg = segment (from);
+    int off = offset (from, 0);
+    
+    for (int j = 0; j < n; j++)
+      seg.put (off + j, dist[j] == Integer.MAX_VALUE ? 0 : dist[j] + 1);
+  }
+  
+  /**
+   * Fill the map with the shortest path distances between all pairs of
+   * nodes, by running the SPF from every node, in parallel, writing each
+   * row out as it is calculated.
+   */
+  public void fill () {
+    fill (csr);
+  }
+  
+  private <E> void fill (CsrGraph<N,E> g) {
+    new AllPairsShortestPathFirst<N,E> (g)
+      .run ((root, dist, nexthop) -> set_row (root, dist));
+  }
+  
+  @Override
+  public void traverse (dist_visitor<N> v) {
+    for (int i = 0; i < n; i++) {
+      IntBuffer seg = segment (i);
+      int off = offset (i, 0);
+      boolean row = false;
+      N from = csr.node (i);
+      
+      for (int j = 0; j < n; j++) {
+        int w = seg.get (off + j);
+        
+        if (w != 0) {
+          v.dist (from, csr.node (j), w - 1);
+          row = true;
+        }
+      }
+      if (row)
+        v.end_row (from);
+    }
+  }
+  
+  /**
+   * Write any changes back to the file.
+   */
+  public void sync () {
+    for (MappedByteBuffer m : maps)
+      m.force ();
+  }
+  
+  /**
+   * Write any changes back to the file and close it. The mappings are
+   * released when they are garbage collected, which Java provides no way
+   * to hasten.
+   */
+  @Override
+  public void close () throws IOException {
+    if (segments == null)
+      return;
+    sync ();
+    segments = null;
+    maps = null;
+    fc.close ();
+  }
+}
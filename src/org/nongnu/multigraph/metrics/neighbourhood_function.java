@@ -0,0 +1,106 @@
+package org.nongnu.multigraph.metrics;
+
+import java.util.Arrays;
+
+/**
+ * The neighbourhood function of a graph: for each distance t, the number
+ * of pairs of nodes (x,y) such that y is reachable from x within a
+ * distance of t. Each node is paired with itself, at a distance of 0.
+ * Distances are hop counts, the number of edges in the paths with the
+ * fewest edges, whatever the weights of the edges.
+ * <p>
+ * The values are estimates, e.g. from sampling, see
+ * {@link TraversalMetrics#sampled_neighbourhood}, and each is given with
+ * an error bound. Where the neighbourhood function is exact, the errors
+ * are 0. The distribution of distances, the average distance and the
+ * effective diameter all follow from the neighbourhood function.
+ * 
+ * @author Paul Jakma
+ */
+public class neighbourhood_function {
+  private final double [] pairs;
+  private final double [] error;
+  
+  neighbourhood_function (double [] pairs, double [] error) {
+    this.pairs = pairs;
+    this.error = error;
+  }
+  
+  /**
+   * @return The greatest distance at which the neighbourhood function
+   *         grows, i.e. beyond which it is constant.
+   */
+  public int max_distance () {
+    return pairs.length - 1;
+  }
+  
+  /**
+   * @param t A distance
+   * @return The estimated number of pairs of nodes within the distance.
+   */
+  public double pairs (int t) {
+    if (pairs.length == 0)
+      return 0;
+    return pairs[Math.min (t, pairs.length - 1)];
+  }
+  
+  /**
+   * @param t A distance
+   * @return The error bound of the estimate for the distance, as given by
+   *         the estimator, e.g. the half-width of a 95% confidence
+   *         interval, or a standard deviation.
+   */
+  public double error (int t) {
+    if (error.length == 0)
+      return 0;
+    return error[Math.min (t, error.length - 1)];
+  }
+  
+  /**
+   * @return The estimated number of pairs of nodes which are reachable,
+   *         from the first to the second, at any distance.
+   */
+  public double reachable_pairs () {
+    return pairs (max_distance ());
+  }
+  
+  /**
+   * The effective diameter, the distance within which the given fraction
+   * of the reachable pairs lie, interpolated between the integer distances
+   * either side.
+   * 
+   * @param q The fraction of reachable pairs, e.g. 0.9.
+   * @return The effective diameter.
+   */
+  public double effective_diameter (double q) {
+    double target = q * reachable_pairs ();
+    int t = 0;
+    
+    while (t < max_distance () && pairs[t] < target)
+      t++;
+    
+    if (t == 0 || pairs[t] == pairs[t - 1])
+      return t;
+    return t - 1 + (target - pairs[t - 1]) / (pairs[t] - pairs[t - 1]);
+  }
+  
+  /**
+   * @return The average distance between pairs of distinct nodes, which
+   *         are reachable, from the first to the second.
+   */
+  public double average_distance () {
+    double sum = 0;
+    
+    for (int t = 1; t < pairs.length; t++)
+      sum += t * (pairs[t] - pairs[t - 1]);
+    
+    double n = reachable_pairs () - pairs (0);
+    return n > 0 ? sum / n : 0;
+  }
+  
+  @Override
+  public String toString () {
+    return "neighbourhood_function: " + Arrays.toString (pairs)
+           + " +/- " + Arrays.toString (error);
+  }
+}
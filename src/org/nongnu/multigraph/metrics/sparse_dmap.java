@@ -0,0 +1,157 @@
+package org.nongnu.multigraph.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sparse distance map, from each node to those other nodes it has a
+ * distance to. Nodes are given dense indices as they are first seen, and
+ * each node's distances are held in a primitive, open-addressed hash
+ * table, keyed by the index of the node at the other end. Suitable for 
+ * large graphs, where only a fraction of pairs of nodes are connected.
+ * 
+ * @author Paul Jakma
+ *
+ * @param <N>
+ */
+public class sparse_dmap<N> implements dmap<N> {
+  private final Map<N,Integer> index = new HashMap<N,Integer> ();
+  private final List<N> nodes = new ArrayList<N> ();
+  private row [] rows = new row [16];
+  
+  /* Open-addressed table of index -> distance, with linear probing.
+   * Keys are stored as index + 1, so 0 marks an empty slot.
+   */
+  private static final class row {
+    int [] keys = new int [4];
+    int [] vals = new int [4];
+    int size = 0;
+    
+    /* Fibonacci hashing: spread the sequential indices by taking the top
+     * log2(table size) bits of the product, so all of the table is used
+     * however large it grows.
+     */
+    private static int slot (int key, int mask) {
+      return (key * 0x9E3779B9) >>> Integer.numberOfLeadingZeros (mask);
+    }
+    
+    int get (int key) {
+      int mask = keys.length - 1;
+      
+      for (int i = slot (key, mask); keys[i] != 0; i = (i + 1) & mask)
+        if (keys[i] == key)
+          return vals[i];
+      
+      return Integer.MAX_VALUE;
+    }
+    
+    void set_min (int key, int w) {
+      int mask = keys.length - 1;
+      int i;
+      
+      for (i = slot (key, mask); keys[i] != 0; i = (i + 1) & mask)
+        if (keys[i] == key) {
+          if (w < vals[i])
+            vals[i] = w;
+          return;
+        }
+      
+      keys[i] = key;
+      vals[i] = w;
+      
+      /* keep the load under 3/4 */
+      if (++size * 4 > keys.length * 3)
+        grow ();
+    }
+    
+    private void grow () {
+      int [] ok = keys, ov = vals;
+      int mask = ok.length * 2 - 1;
+      
+      keys = new int [ok.length * 2];
+      vals = new int [ok.length * 2];
+      
+      for (int j = 0; j < ok.length; j++) {
+        if (ok[j] == 0)
+          continue;
+        
+        int i = slot (ok[j], mask);
+        while (keys[i] != 0)
+          i = (i + 1) & mask;
+        keys[i] = ok[j];
+        vals[i] = ov[j];
+      }
+    }
+  }
+  
+  private int index (N node) {
+    Integer i = index.get (node);
+    return i == null ? -1 : i;
+  }
+  
+  private int add_index (N node) {
+    int i = index (node);
+    
+    if (i >= 0)
+      return i;
+    
+    i = nodes.size ();
+    index.put (node, i);
+    nodes.add (node);
+    return i;
+  }
+  
+  @Override
+  public int dist (N from, N to) {
+    int i, j;
+    row r;
+    
+    if ((i = index (from)) < 0 || (j = index (to)) < 0
+        || i >= rows.length || (r = rows[i]) == null)
+      return Integer.MAX_VALUE;
+    
+    return r.get (j + 1);
+  }
+  
+  @Override
+  public void set (N from, N to, int w) {
+    int i, j;
+    
+    if (w == Integer.MAX_VALUE)
+      return;
+    
+    if (w < 0)
+      throw new IllegalArgumentException ("weight " + w + " is less than 0");
+    
+    i = add_index (from);
+    j = add_index (to);
+    
+    if (i >= rows.length) {
+      row [] nrows = new row [Math.max (i + 1, rows.length * 2)];
+      System.arraycopy (rows, 0, nrows, 0, rows.length);
+      rows = nrows;
+    }
+    if (rows[i] == null)
+      rows[i] = new row ();
+    
+    rows[i].set_min (j + 1, w);
+  }
+  
+  @Override
+  public void traverse (dist_visitor<N> v) {
+    for (int i = 0; i < rows.length; i++) {
+      row r = rows[i];
+      
+      if (r == null)
+        continue;
+      
+      N from = nodes.get (i);
+      for (int k = 0; k < r.keys.length; k++)
+        if (r.keys[k] != 0)
+          v.dist (from, nodes.get (r.keys[k] - 1), r.vals[k]);
+      v.end_row (from);
+    }
+  }
+}
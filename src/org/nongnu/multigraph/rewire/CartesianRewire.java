@@ -157,7 +157,7 @@ public class CartesianRewire<N extends PositionableNode, E>
             targets.addAll (gridindex[i][j]);
     
     for (N node : gridindex[x][y])
-      targets.addAll (graph.successors (node));
+      graph.forEachSuccessor (node, targets::add);
     
     if (targets.size () > 1)
       rewire (gridindex[x][y], targets);
@@ -184,7 +184,7 @@ public class CartesianRewire<N extends PositionableNode, E>
         debug.printf ("Cartesian: %s -> %s = %f\n", n1, n2, dist);
         
         if (dist <= range && (label = el.getLabel (n1, n2)) != null) {
-          if (!graph.successors (n1).contains (n2))
+          if (!graph.is_linked (n1, n2))
             graph.set (n1, n2, label);
         } else
           graph.remove (n1, n2);
@@ -1,10 +1,26 @@
 package org.nongnu.multigraph.structure;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import org.nongnu.multigraph.CsrGraph;
 import org.nongnu.multigraph.Graph;
 
 /**
  * Calculate the maximum k-core membership of each vertex, according to the 
  * k-core definition from Seidman, "Network structure and minimum degree",
  * Social Networks, 1983.
+ * <p>
+ * The k-cores are found with the O(V+E) bucket algorithm of Batagelj and
+ * Zaversnik, "An O(m) Algorithm for Cores Decomposition of Networks",
+ * 2003. The degree of a node is its nodal out-degree, and removing a node
+ * lowers the degree of its successors, so the graph should be undirected.
+ * <p>
+ * There is also a parallel variant, which iterates the h-index of each
+ * node's neighbours' values, starting from their degrees, until nothing
+ * changes, as per Lü et al, "The H-index of a network node and its
+ * relation to degree and coreness", Nature Communications, 2016.
  * 
  * @author Paul Jakma
  */
@@ -21,43 +37,203 @@ public class kshell {
    * @return The k-value of the maximum k-shell present in the graph.
    */
   static public <N extends kshell_node,E> int calc (Graph<N,E> graph) {
-    for (N p : graph) {
-      p.gkc ().reset ();
-      p.gkc ().k = graph.nodal_outdegree (p);
+    CsrGraph<N,E> csr = graph.freeze ();
+    int [] k = core_numbers (csr);
+    int max = 0;
+    
+    for (int i = 0; i < k.length; i++) {
+      kshell_node_data d = csr.node (i).gkc ();
+      
+      d.reset ();
+      d.k = k[i];
+      d.removed = true;
+      max = Math.max (max, k[i]);
     }
+    return max;
+  }
+  
+  /**
+   * Calculate the maximum k-shell membership of each node in the graph.
+   * 
+   * @param <N> The type of the nodes in the graph.
+   * @param <E> The type of the edges in the graph.
+   * @param graph The graph to act on.
+   * @return A map of each node to the k-value of its maximum k-shell.
+   */
+  static public <N,E> Map<N,Integer> cores (Graph<N,E> graph) {
+    return to_map (graph.freeze (), null);
+  }
+  
+  /**
+   * As {@link #cores(Graph)}, using {@link #parallel_core_numbers}.
+   */
+  static public <N,E> Map<N,Integer> parallel_cores (Graph<N,E> graph) {
+    CsrGraph<N,E> csr = graph.freeze ();
+    return to_map (csr, parallel_core_numbers (csr));
+  }
+  
+  static private <N,E> Map<N,Integer> to_map (CsrGraph<N,E> csr, int [] k) {
+    Map<N,Integer> m = new HashMap<N,Integer> ();
     
-    int remain = graph.size ();
-    int kshell = 0;
-    do {
-      boolean removed = false;
+    if (k == null)
+      k = core_numbers (csr);
+    
+    for (int i = 0; i < k.length; i++)
+      m.put (csr.node (i), k[i]);
+    
+    return m;
+  }
+  
+  /**
+   * Calculate the maximum k-shell membership of each node of the graph,
+   * in O(V+E) time.
+   * 
+   * @param <N> The type of the nodes in the graph.
+   * @param <E> The type of the edges in the graph.
+   * @param csr A snapshot of the graph to act on.
+   * @return The k-value of each node's maximum k-shell, indexed by the
+   *         ids of the nodes in the snapshot.
+   */
+  static public <N,E> int [] core_numbers (CsrGraph<N,E> csr) {
+    final int n = csr.nodeIdBound ();
+    final int [] targets = csr.targets ();
+    int [] deg = new int [n];
+    int md = 0;
+    
+    for (int v = 0; v < n; v++)
+      md = Math.max (md, (deg[v] = csr.nodal_outdegree (v)));
+    
+    /* Bucket sort the nodes by degree. vert holds the nodes in order of
+     * degree, pos the position of each node in vert, and bin the position
+     * in vert of the first node of each degree.
+     */
+    int [] bin = new int [md + 1];
+    int [] pos = new int [n];
+    int [] vert = new int [n];
+    
+    for (int v = 0; v < n; v++)
+      bin[deg[v]]++;
+    for (int d = 0, start = 0; d <= md; d++) {
+      int num = bin[d];
+      bin[d] = start;
+      start += num;
+    }
+    for (int v = 0; v < n; v++) {
+      pos[v] = bin[deg[v]]++;
+      vert[pos[v]] = v;
+    }
+    for (int d = md; d > 0; d--)
+      bin[d] = bin[d - 1];
+    bin[0] = 0;
+    
+    /* Take the nodes in order of degree, lowering the degree of each
+     * neighbour of higher degree, by moving it to the front of its bucket
+     * and shifting the bucket boundary past it.
+     */
+    for (int i = 0; i < n; i++) {
+      int v = vert[i];
+      int end = csr.offset (v + 1);
       
-      do {
-        removed = false;
+      for (int e = csr.offset (v); e < end; e++) {
+        int u = targets[e];
         
-        for (N h : graph) {
-          
-          if (h.gkc ().k > kshell)
-            continue;
-          
-          if (h.gkc ().removed)
-            continue;
-          
-          h.gkc ().removed = true;
-          remain--;
-          
-          for (N s : graph.successors (h))
-            if (!s.gkc ().removed) {
-              s.gkc ().k = Math.max (kshell, s.gkc ().k - 1);
-            }
+        /* rows are sorted, skip multi-edges to the same node */
+        if (e > csr.offset (v) && targets[e - 1] == u)
+          continue;
+        
+        if (deg[u] > deg[v]) {
+          int du = deg[u];
+          int pu = pos[u];
+          int pw = bin[du];
+          int w = vert[pw];
           
-          removed = true;
+          if (u != w) {
+            pos[u] = pw;
+            vert[pu] = w;
+            pos[w] = pu;
+            vert[pw] = u;
+          }
+          bin[du]++;
+          deg[u]--;
         }
-      } while (removed);
+      }
+    }
+    return deg;
+  }
+  
+  /**
+   * Calculate the maximum k-shell membership of each node of the graph, 
+   * in parallel. Each round calculates, for every node, the h-index of
+   * the values of its neighbours from the previous round, starting from
+   * the degrees of the nodes, until no value changes. The number of
+   * rounds needed depends on the structure of the graph, but is usually
+   * small.
+   * <p>
+   * Directed graphs are not symmetric, which the h-index calculation 
+   * requires, and are handed to {@link #core_numbers} instead.
+   * 
+   * @param <N> The type of the nodes in the graph.
+   * @param <E> The type of the edges in the graph.
+   * @param csr A snapshot of the graph to act on.
+   * @return The k-value of each node's maximum k-shell, indexed by the
+   *         ids of the nodes in the snapshot.
+   */
+  static public <N,E> int [] parallel_core_numbers (final CsrGraph<N,E> csr) {
+    if (csr.is_directed ())
+      return core_numbers (csr);
+    
+    final int n = csr.nodeIdBound ();
+    final int [] targets = csr.targets ();
+    final int md = csr.max_nodal_degree ();
+    final ThreadLocal<int []> counts
+      = ThreadLocal.withInitial (() -> new int [md + 1]);
+    final int [] deg = new int [n];
+    int [] cur = deg;
+    int [] next = new int [n];
+    AtomicBoolean changed = new AtomicBoolean ();
+    
+    IntStream.range (0, n).parallel ()
+             .forEach (v -> deg[v] = csr.nodal_outdegree (v));
+    
+    do {
+      final int [] c = cur, nx = next;
+      changed.set (false);
       
-      kshell++;
+      IntStream.range (0, n).parallel ().forEach (v -> {
+        int [] count = counts.get ();
+        int cv = c[v];
+        int start = csr.offset (v);
+        int end = csr.offset (v + 1);
+        
+        if (cv == 0) {
+          nx[v] = 0;
+          return;
+        }
+        
+        /* count the neighbours' values, capped at this node's value, as
+         * the h-index can not rise above it.
+         */
+        for (int e = start; e < end; e++)
+          if (e == start || targets[e] != targets[e - 1])
+            count[Math.min (c[targets[e]], cv)]++;
+        
+        int h = cv, sum = 0;
+        for (; h > 0; h--)
+          if ((sum += count[h]) >= h)
+            break;
+        
+        for (int i = 0; i <= cv; i++)
+          count[i] = 0;
+        
+        nx[v] = h;
+        if (h != cv)
+          changed.set (true);
+      });
       
-    } while (remain > 0);
+      next = cur;
+      cur = nx;
+    } while (changed.get ());
     
-    return kshell - 1;
+    return cur;
   }
 }
@@ -0,0 +1,87 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+import java.util.function.Supplier;
+
+/**
+ * Contention benchmark, comparing MultiDiGraph with ConcurrentMultiDiGraph
+ * as the number of writer threads grows. Each thread sets and removes
+ * edges amongst its own set of nodes, so ideally throughput would scale
+ * with the threads.
+ * <p>
+ * Not run as part of the tests. Run with:
+ * <pre>
+ *   java org.nongnu.multigraph.BenchConcurrentGraph [max threads] [ops/thread]
+ * </pre>
+ */
+public class BenchConcurrentGraph {
+  static final int NODES = 1000;
+
+  static void writer (Graph<Integer,Integer> g, int t, int ops) {
+    int base = t * NODES;
+
+    for (int i = 0; i < ops; i++) {
+      int from = base + i % NODES;
+      int to = base + (i * 7 + 1) % NODES;
+      Integer label = i % (4 * NODES);
+
+      if ((i & 3) == 3)
+        g.remove (from, to);
+      else
+        g.set (from, to, label);
+    }
+  }
+
+  static double run (Supplier<Graph<Integer,Integer>> gs,
+                     int threads, final int ops)
+                     throws InterruptedException {
+    final Graph<Integer,Integer> g = gs.get ();
+    Thread [] ts = new Thread [threads];
+
+    long start = System.nanoTime ();
+    for (int t = 0; t < threads; t++) {
+      final int tn = t;
+      ts[t] = new Thread (() -> writer (g, tn, ops));
+      ts[t].start ();
+    }
+    for (Thread t : ts)
+      t.join ();
+    long elapsed = System.nanoTime () - start;
+
+    return (double) threads * ops / (elapsed / 1e9);
+  }
+
+  public static void main (String [] args) throws InterruptedException {
+    int max = args.length > 0 ? Integer.parseInt (args[0])
+                              : Runtime.getRuntime ().availableProcessors ();
+    int ops = args.length > 1 ? Integer.parseInt (args[1]) : 500000;
+
+    /* warm up */
+    run (MultiDiGraph::new, 2, ops / 10);
+    run (ConcurrentMultiDiGraph::new, 2, ops / 10);
+
+    System.out.printf ("%8s %20s %24s\n",
+                       "threads", "MultiDiGraph ops/s",
+                       "ConcurrentMultiDiGraph ops/s");
+    for (int threads = 1; threads <= max; threads *= 2)
+      System.out.printf ("%8d %20.0f %24.0f\n", threads,
+                         run (MultiDiGraph::new, threads, ops),
+                         run (ConcurrentMultiDiGraph::new, threads, ops));
+  }
+}
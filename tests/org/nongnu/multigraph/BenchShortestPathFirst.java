@@ -0,0 +1,191 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Benchmark of the queues used for Dijkstra's SPF. A plain Dijkstra is run
+ * over a CSR snapshot of a random graph, from every node, with a
+ * java.util.PriorityQueue that leaves stale entries behind rather than
+ * decreasing keys, the indexed 4-ary heap and the radix heap. Then
+ * ShortestPathFirst itself is run from every node, in its default and
+ * workspace modes, with each of its queues.
+ * <p>
+ * Not run as part of the tests. Run with:
+ * <pre>
+ *   java org.nongnu.multigraph.BenchShortestPathFirst [nodes] [degree] [max weight]
+ * </pre>
+ */
+public class BenchShortestPathFirst {
+  static long checksum;
+
+  static void dijkstra (CsrGraph<Integer,Integer> csr, int root,
+                        int [] dist, IntQueue q) {
+    int [] targets = csr.targets ();
+    int [] weights = csr.weights ();
+
+    Arrays.fill (dist, Integer.MAX_VALUE);
+    q.clear ();
+    dist[root] = 0;
+    q.insert (root, 0);
+    while (!q.isEmpty ()) {
+      int u = q.poll ();
+
+      for (int i = csr.offset (u); i < csr.offset (u + 1); i++) {
+        int v = targets[i];
+        int d = dist[u] + weights[i];
+
+        if (d < dist[v]) {
+          dist[v] = d;
+          q.insert (v, d);
+        }
+      }
+    }
+  }
+
+  static void dijkstra_pq (CsrGraph<Integer,Integer> csr, int root,
+                           int [] dist, PriorityQueue<long []> q) {
+    int [] targets = csr.targets ();
+    int [] weights = csr.weights ();
+    long [] e;
+
+    Arrays.fill (dist, Integer.MAX_VALUE);
+    q.clear ();
+    dist[root] = 0;
+    q.add (new long [] { 0, root });
+    while ((e = q.poll ()) != null) {
+      int u = (int) e[1];
+
+      if (e[0] > dist[u])
+        continue;
+
+      for (int i = csr.offset (u); i < csr.offset (u + 1); i++) {
+        int v = targets[i];
+        int d = dist[u] + weights[i];
+
+        if (d < dist[v]) {
+          dist[v] = d;
+          q.add (new long [] { d, v });
+        }
+      }
+    }
+  }
+
+  static void sum (int [] dist) {
+    for (int d : dist)
+      checksum += d;
+  }
+
+  static double time (String what, Runnable r) {
+    long start = System.nanoTime ();
+    r.run ();
+    double ms = (System.nanoTime () - start) / 1e6;
+    System.out.printf ("%-32s %10.1f ms\n", what, ms);
+    return ms;
+  }
+
+  static void spf (Graph<Integer,Integer> g, boolean workspace,
+                   boolean radix) {
+    ShortestPathFirst<Integer,Integer> spf
+      = new ShortestPathFirst<Integer,Integer> (g)
+          .workspace (workspace).radix_queue (radix);
+
+    for (Integer n : g) {
+      spf.run (n);
+      checksum += spf.path (0) == null ? 0 : spf.path (0).size ();
+    }
+  }
+
+  static void pairs (Graph<Integer,Integer> g, int n, boolean p2p) {
+    ShortestPathFirst<Integer,Integer> spf
+      = new ShortestPathFirst<Integer,Integer> (g);
+    Random r = new Random (2);
+
+    for (int i = 0; i < n; i++) {
+      Integer from = r.nextInt (n);
+      Integer to = r.nextInt (n);
+      List<Edge<Integer,Integer>> path;
+
+      if (p2p)
+        path = spf.path (from, to);
+      else {
+        spf.run (from);
+        path = spf.path (to);
+      }
+      checksum += path == null ? 0 : path.size ();
+    }
+  }
+
+  public static void main (String [] args) {
+    int nodes = args.length > 0 ? Integer.parseInt (args[0]) : 2000;
+    int degree = args.length > 1 ? Integer.parseInt (args[1]) : 8;
+    int maxw = args.length > 2 ? Integer.parseInt (args[2]) : 16;
+    Random r = new Random (1);
+    final MultiDiGraph<Integer,Integer> g = new MultiDiGraph<> ();
+
+    for (int i = 0; i < nodes * degree; i++)
+      g.set (r.nextInt (nodes), r.nextInt (nodes), i, 1 + r.nextInt (maxw));
+
+    final CsrGraph<Integer,Integer> csr = g.freeze ();
+    final int n = csr.size ();
+    final int [] dist = new int [n];
+    final PriorityQueue<long []> pq
+      = new PriorityQueue<long []> ((a, b) -> Long.compare (a[0], b[0]));
+    final IntHeap heap = new IntHeap (n);
+    final IntRadixHeap radix = new IntRadixHeap (n);
+
+    System.out.printf ("%d nodes, %d edges, weights 1-%d\n",
+                       n, csr.link_count (), maxw);
+    for (int round = 0; round < 3; round++) {
+      System.out.printf ("round %d%s\n", round, round == 0 ? " (warm up)" : "");
+      time ("Dijkstra, PriorityQueue", () -> {
+        for (int i = 0; i < n; i++) {
+          dijkstra_pq (csr, i, dist, pq);
+          sum (dist);
+        }
+      });
+      time ("Dijkstra, 4-ary IntHeap", () -> {
+        for (int i = 0; i < n; i++) {
+          dijkstra (csr, i, dist, heap);
+          sum (dist);
+        }
+      });
+      time ("Dijkstra, IntRadixHeap", () -> {
+        for (int i = 0; i < n; i++) {
+          dijkstra (csr, i, dist, radix);
+          sum (dist);
+        }
+      });
+      time ("SPF", () -> spf (g, false, false));
+      time ("SPF, radix", () -> spf (g, false, true));
+      time ("SPF, workspace", () -> spf (g, true, false));
+      time ("SPF, workspace, radix", () -> spf (g, true, true));
+      g.track_predecessors (false);
+      time ("pairs, SPF run", () -> pairs (g, n, false));
+      time ("pairs, forward search", () -> pairs (g, n, true));
+      g.track_predecessors (true);
+      time ("pairs, bidirectional search", () -> pairs (g, n, true));
+      g.track_predecessors (false);
+    }
+    System.out.println ("checksum " + checksum);
+  }
+}
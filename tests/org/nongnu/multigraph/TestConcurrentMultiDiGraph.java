@@ -0,0 +1,135 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestConcurrentMultiDiGraph {
+  static final int THREADS = 4;
+  static final int NODES = 200;
+  Graph<Integer,String> g = new ConcurrentMultiDiGraph<Integer,String> ();
+
+  /* Each thread adds a ring of edges, and some edges it then removes. */
+  private void writer (int t) {
+    for (int i = 0; i < NODES; i++) {
+      int from = t * NODES + i;
+      int to = t * NODES + (i + 1) % NODES;
+      g.set (from, to, "e" + from + "-" + to);
+      g.set (from, to, "x" + from + "-" + to, 2);
+      g.set (from, (to + NODES) % (THREADS * NODES), "c" + from);
+      assertTrue (g.remove (from, to, "x" + from + "-" + to));
+    }
+  }
+
+  /* Run the writers, rethrowing here whatever failed in them, as JUnit
+   * only sees failures on the thread running the test.
+   */
+  private void run_writers (Runnable during) throws Throwable {
+    Thread [] threads = new Thread [THREADS];
+    final Throwable [] fail = new Throwable [THREADS];
+
+    for (int t = 0; t < THREADS; t++) {
+      final int tn = t;
+      threads[t] = new Thread (() -> writer (tn));
+      threads[t].setUncaughtExceptionHandler ((th, e) -> fail[tn] = e);
+      threads[t].start ();
+    }
+    if (during != null)
+      during.run ();
+    for (Thread t : threads)
+      t.join ();
+
+    for (Throwable e : fail)
+      if (e != null)
+        throw e;
+  }
+
+  @Test
+  public void testConcurrentWriters () throws Throwable {
+    final int [] events = new int [1];
+
+    g.edge_events ().addObserver ((o, arg) -> {
+      synchronized (events) {
+        events[0]++;
+      }
+    });
+
+    run_writers (null);
+
+    assertTrue (g.size () == THREADS * NODES);
+    assertTrue (g.link_count () == 2 * THREADS * NODES);
+    assertTrue (events[0] == 4 * THREADS * NODES);
+
+    long edges = 0;
+    for (Integer n : g) {
+      assertTrue (g.nodal_outdegree (n) == 2);
+      assertTrue (g.edge_outdegree (n) == g.edges (n).size ());
+      edges += g.edge_outdegree (n);
+    }
+    assertTrue (edges == g.link_count ());
+    assertTrue (g.max_nodal_degree () == 2);
+  }
+
+  /* Snapshots taken while writers are active must not throw, and must
+   * be self-consistent, if not complete.
+   */
+  @Test
+  public void testFreezeWhileWriting () throws Throwable {
+    final int [] snapshots = new int [1];
+
+    run_writers (() -> {
+      for (int i = 0; i < 20; i++) {
+        CsrGraph<Integer,String> csr = g.freeze ();
+        long edges = 0;
+
+        for (Integer n : csr) {
+          for (Edge<Integer,String> e : csr.edges (n))
+            assertTrue (csr.contains (e.to ()));
+          edges += csr.edge_outdegree (n);
+        }
+        assertTrue (edges == csr.link_count ());
+        snapshots[0]++;
+      }
+    });
+    assertTrue (snapshots[0] == 20);
+
+    /* once quiesced, the snapshot is complete */
+    CsrGraph<Integer,String> csr = g.freeze ();
+    assertTrue (csr.size () == g.size ());
+    assertTrue (csr.link_count () == g.link_count ());
+  }
+
+  @Test
+  public void testRemoveNode () {
+    g.set (1, 2, "a");
+    g.set (2, 1, "b");
+    g.set (2, 3, "c");
+
+    assertTrue (g.remove ((Object) 2));
+    assertTrue (!g.contains (2));
+    assertTrue (g.edge (1, 2) == null);
+    assertTrue (g.link_count () == 1);
+    assertTrue (g.remove ((Object) 2) == false);
+
+    /* re-adding the node gives it a clean slate */
+    g.add (2);
+    assertTrue (g.edges (2).isEmpty ());
+  }
+}
@@ -0,0 +1,143 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCsrGraph {
+  Graph<String,String> g = new MultiDiGraph<String,String> ();
+  CsrGraph<String,String> csr;
+
+  @Before
+  public void setUp () throws Exception {
+    /* a chain, with some multi-edges and some edges back */
+    for (int i = 2; i < 30; i++) {
+      String n1 = ("Node" + (i - 1)).intern ();
+      String n2 = ("Node" + i).intern ();
+      String l = ("Edge" + (i - 1) + "-" + i).intern ();
+      g.set (n1, n2, l, i);
+      if (i % 3 == 0)
+        g.set (n2, n1, l, i);
+      if (i % 5 == 0)
+        g.set (n1, n2, (l + "-2").intern (), 1);
+    }
+    g.set ("Node7", "Node7", "loop");
+    csr = g.freeze ();
+  }
+
+  @Test
+  public void testSnapshot () {
+    long edges = 0;
+    for (String n : g)
+      edges += g.edge_outdegree (n);
+
+    assertTrue (csr.size () == g.size ());
+    assertTrue (csr.link_count () == edges);
+    assertTrue (csr.max_nodal_degree () == g.max_nodal_degree ());
+
+    for (String n : g) {
+      assertTrue (csr.contains (n));
+      assertTrue (csr.node (csr.nodeId (n)) == n);
+      assertTrue (csr.edge_outdegree (n) == g.edge_outdegree (n));
+      assertTrue (csr.nodal_outdegree (n) == g.nodal_outdegree (n));
+      assertTrue (csr.successors (n).equals (g.successors (n)));
+
+      for (Edge<String,String> e : g.edges (n)) {
+        Edge<String,String> ce = csr.edge (e.from (), e.to (), e.label ());
+        assertTrue (ce != null);
+        assertTrue (ce.weight () == e.weight ());
+        assertTrue (csr.edges (n).contains (e));
+        assertTrue (csr.is_linked (e.from (), e.to ()));
+        assertTrue (csr.edges (e.from (), e.to ()).size ()
+                    == g.edges (e.from (), e.to ()).size ());
+      }
+    }
+    assertTrue (csr.edges ("Node40") == null);
+    assertTrue (csr.edge ("Node1", "Node3") == null);
+  }
+
+  @Test
+  public void testIndependent () {
+    g.remove ("Node1", "Node2", "Edge1-2");
+    g.set ("Node1", "Node3", "Edge1-3");
+
+    assertTrue (csr.edge ("Node1", "Node2", "Edge1-2") != null);
+    assertTrue (csr.edge ("Node1", "Node3") == null);
+  }
+
+  @Test
+  public void testStreams () {
+    long edges = 0;
+    for (String n : g)
+      edges += g.edge_outdegree (n);
+
+    for (Graph<String,String> gr
+           : Arrays.<Graph<String,String>> asList (
+               g, csr, new SyncGraph<String,String> (g))) {
+      Spliterator<String> ns = gr.nodeStream ().spliterator ();
+      assertTrue (ns.hasCharacteristics (Spliterator.SIZED
+                                         | Spliterator.SUBSIZED));
+      assertTrue (ns.estimateSize () == g.size ());
+      assertTrue (gr.nodeStream ().parallel ()
+                    .collect (Collectors.toSet ()).equals (g));
+
+      assertTrue (gr.edgeStream ().count () == edges);
+      assertTrue (gr.edgeStream ().parallel ().allMatch (
+                    e -> g.edge (e.from (), e.to (), e.label ()).weight ()
+                         == e.weight ()));
+    }
+
+    /* the snapshot edge streams split evenly by edges */
+    for (Graph<String,String> gr
+           : Arrays.<Graph<String,String>> asList (g, csr)) {
+      Spliterator<Edge<String,String>> es = gr.edgeStream ().spliterator ();
+      assertTrue (es.hasCharacteristics (Spliterator.SIZED
+                                         | Spliterator.SUBSIZED));
+      Spliterator<Edge<String,String>> pre = es.trySplit ();
+      assertTrue (pre.estimateSize () + es.estimateSize () == edges);
+      assertTrue (Math.abs (pre.estimateSize () - es.estimateSize ()) <= 1);
+    }
+
+    /* the snapshot does not see later changes */
+    Stream<String> s = g.nodeStream ();
+    g.add ("Node99");
+    assertTrue (s.count () == g.size () - 1);
+    
+    /* the edge lingering to a removed node is not in the snapshot */
+    g.remove ((Object) "Node29");
+    assertTrue (g.edges ("Node28").stream ()
+                  .anyMatch (e -> e.to ().equals ("Node29")));
+    CsrGraph<String,String> lc = g.freeze ();
+    assertTrue (lc.edgeStream ().count () == lc.link_count ());
+    assertTrue (lc.edgeStream ().parallel ()
+                  .allMatch (e -> lc.contains (e.to ())));
+  }
+
+  @Test(expected=UnsupportedOperationException.class)
+  public void testImmutable () {
+    csr.set ("Node1", "Node3", "Edge1-3");
+  }
+}
@@ -0,0 +1,79 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestIntQueue {
+  /* Simulate a Dijkstra-like use: keys inserted are never less than the
+   * last polled, queued keys are decreased, and ids are re-queued after
+   * being polled. Polled keys must come out in order, and each id must
+   * come out with its least key.
+   */
+  private void check (IntQueue q) {
+    Random r = new Random (1);
+    final int n = 1000;
+    int [] key = new int [n];
+    int last = 0;
+    int polled = 0;
+    
+    for (int round = 0; round < 3; round++) {
+      q.clear ();
+      last = 0;
+      Arrays.fill (key, -1);
+      
+      for (int i = 0; i < n * 5 || !q.isEmpty (); i++) {
+        if (i < n * 5 && (q.isEmpty () || r.nextInt (3) > 0)) {
+          int id = r.nextInt (n);
+          int k = last + r.nextInt (1 << r.nextInt (20));
+          
+          q.ensure_capacity (id + 1);
+          if (!q.contains (id) || k < key[id])
+            key[id] = k;
+          q.insert (id, k);
+          continue;
+        }
+        
+        int size = q.size ();
+        int id = q.poll ();
+        
+        assertTrue (q.size () == size - 1);
+        assertTrue (!q.contains (id));
+        assertTrue (key[id] >= last);
+        last = key[id];
+        polled++;
+      }
+    }
+    assertTrue (polled > n);
+  }
+  
+  @Test
+  public void testHeap () {
+    check (new IntHeap (1));
+  }
+  
+  @Test
+  public void testRadixHeap () {
+    check (new IntRadixHeap (1));
+  }
+}
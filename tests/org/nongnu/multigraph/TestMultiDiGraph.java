@@ -18,6 +18,13 @@
 package org.nongnu.multigraph;
 
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -89,6 +96,13 @@ public class TestMultiDiGraph {
                     + ", edges: " + g.edges (s).size (),
                     g.successors (s).size () == nd);
 
+      final Set<String> succ = new HashSet<String> ();
+      g.forEachSuccessor (s, succ::add);
+      assertTrue ("forEachSuccessor must visit the successors",
+                  succ.equals (g.successors (s)) && succ.size () == nd);
+      for (Edge<String,String> e : g.edges (s))
+        assertTrue (g.successors (s).contains (e.to ()));
+      
       nodal_outdegree += nd;
       if (nd > max_nodal_degree)
         max_nodal_degree = nd;
@@ -100,8 +114,17 @@ public class TestMultiDiGraph {
     
     assertTrue ("num " + num + ", == size: " + g.size (),
                 num == g.size ());
-    //assertTrue (((float)nodal_outdegree / num) == g.avg_nodal_degree ());
+    assertTrue (Math.abs ((float)nodal_outdegree / Math.max (num, 1)
+                          - g.avg_nodal_degree ()) < 1e-4);
     assertTrue (max_nodal_degree == g.max_nodal_degree ());
+    assertTrue (edge_outdegree == g.link_count ());
+    
+    int [] hist = ((MultiDiGraph<String,String>) g).degree_histogram ();
+    int hnum = 0;
+    assertTrue (hist.length == max_nodal_degree + 1);
+    for (int i = 0; i < hist.length; i++)
+      hnum += hist[i];
+    assertTrue (hnum == num);
   }
   private void testRemoveNNL1 (String n1, String n2, String l, boolean expect) {
     System.out.printf ("RemoveNNL %s, %s, %s %s\n", n1, n2, l, expect);
@@ -227,4 +250,169 @@ public class TestMultiDiGraph {
                 (g.edge (n3, n2) == null) == true);
   }
   
+  @Test
+  public void testIntGraph () {
+    @SuppressWarnings ("unchecked")
+    IntGraph<String> ig = (IntGraph<String>) g;
+    String n1 = "Node21".intern ();
+    String n2 = "Node22".intern ();
+    
+    for (String n : g) {
+      final int id = ig.nodeId (n);
+      final int [] count = new int [1];
+      
+      assertTrue (id >= 0 && id < ig.nodeIdBound ());
+      assertTrue (ig.node (id) == n);
+      assertTrue (ig.outDegree (id) == g.edge_outdegree (n));
+      
+      ig.forEachEdge (id, (from, to, weight) -> {
+        assertTrue (from == id);
+        assertTrue (g.is_linked (ig.node (from), ig.node (to)));
+        count[0]++;
+      });
+      assertTrue (count[0] == g.edge_outdegree (n));
+    }
+    
+    /* ids are stable, and a removed node's id is released */
+    int id1 = ig.nodeId (n1);
+    int id2 = ig.nodeId (n2);
+    assertTrue (g.remove (n2));
+    assertTrue (ig.nodeId (n1) == id1);
+    assertTrue (ig.nodeId (n2) == -1);
+    assertTrue (ig.node (id2) == null);
+    
+    /* the released id is a gap, which may be walked over */
+    assertTrue (ig.outDegree (id2) == 0);
+    ig.forEachEdge (id2, (from, to, weight) -> fail ());
+    for (int id = 0; id < ig.nodeIdBound (); id++)
+      ig.forEachEdge (id, (from, to, weight) -> {});
+    
+    /* edges lingering to the removed node are not visible */
+    ig.forEachEdge (id1, (from, to, weight) -> assertTrue (to != id2));
+  }
+  
+  /* the predecessor index must match the edges out of all nodes */
+  private void check_predecessors (MultiDiGraph<String,String> mg) {
+    int edges = 0;
+    
+    for (String n : mg) {
+      for (Edge<String,String> e : mg.in_edges (n)) {
+        assertTrue (e.to () == n);
+        assertTrue (mg.edges (e.from ()).contains (e));
+        assertTrue (mg.predecessors (n).contains (e.from ()));
+      }
+      for (Edge<String,String> e : mg.edges (n))
+        assertTrue (mg.in_edges (e.to ()).contains (e));
+      assertTrue (mg.edge_indegree (n) == mg.in_edges (n).size ());
+      assertTrue (mg.nodal_indegree (n) == mg.predecessors (n).size ());
+      edges += mg.edge_indegree (n);
+      edges -= mg.edge_outdegree (n);
+    }
+    assertTrue (edges == 0);
+  }
+  
+  @Test
+  public void testPredecessors () {
+    MultiDiGraph<String,String> mg = (MultiDiGraph<String,String>) g;
+    String n1 = "Node21".intern ();
+    String n2 = "Node22".intern ();
+    
+    mg.track_predecessors (true);
+    check_predecessors (mg);
+    
+    mg.set (n2, n1, "extra");
+    mg.remove (n1, n2);
+    check_predecessors (mg);
+    assertTrue (!mg.predecessors (n2).contains (n1));
+    
+    /* removing a node also removes the edges into it */
+    assertTrue (mg.remove (n1));
+    check_predecessors (mg);
+    for (String n : mg)
+      assertTrue (!mg.is_linked (n, n1));
+    
+    mg.clear_all_edges ();
+    check_predecessors (mg);
+    mg.track_predecessors (false);
+  }
+  
+  @Test
+  public void testBulkLoad () {
+    MultiDiGraph<String,String> bg = new MultiDiGraph<String,String> ();
+    final int [] events = new int [2];
+    List<EdgeSpec<String,String>> specs = new ArrayList<> ();
+    
+    for (String n : g)
+      for (Edge<String,String> e : g.edges (n))
+        specs.add (new EdgeSpec<> (e.from (), e.to (), e.label (), e.weight ()));
+    
+    bg.addObserver ((o, arg) -> events[0]++);
+    bg.edge_events ().addObserver ((o, arg) -> events[1]++);
+    bg.bulk_load (specs.stream (), g.size ());
+    
+    assertTrue (events[0] == 1 && events[1] == 1);
+    assertTrue (bg.equals (g));
+    assertTrue (bg.link_count () == g.link_count ());
+    for (String n : g)
+      for (Edge<String,String> e : g.edges (n))
+        assertTrue (bg.edge (e.from (), e.to (), e.label ()).weight ()
+                    == e.weight ());
+  }
+  
+  private void check_same (MultiDiGraph<Integer,String> a,
+                           MultiDiGraph<Integer,String> b) {
+    assertTrue (a.equals (b));
+    assertTrue (a.link_count () == b.link_count ());
+    assertTrue (a.max_nodal_degree () == b.max_nodal_degree ());
+    assertTrue (a.avg_nodal_degree () == b.avg_nodal_degree ());
+    for (Integer n : a) {
+      assertTrue (a.edge_outdegree (n) == b.edge_outdegree (n));
+      for (Edge<Integer,String> e : a.edges (n))
+        assertTrue (b.edge (e.from (), e.to (), e.label ()).weight ()
+                    == e.weight ());
+    }
+  }
+  
+  @Test
+  public void testParallelLoad () {
+    List<EdgeSpec<Integer,String>> specs = new ArrayList<> ();
+    Random r = new Random (1);
+    
+    for (int i = 0; i < 5000; i++)
+      specs.add (new EdgeSpec<> (r.nextInt (300), r.nextInt (300), "e" + i,
+                                 1 + r.nextInt (10)));
+    
+    /* set some edges again, either way around, with other weights. The
+     * last spec must win, and for undirected graphs in both directions.
+     */
+    for (int i = 0; i < 2000; i++) {
+      EdgeSpec<Integer,String> s = specs.get (r.nextInt (5000));
+      int w = 11 + r.nextInt (10);
+      
+      specs.add (r.nextBoolean ()
+                 ? new EdgeSpec<> (s.from (), s.to (), s.label (), w)
+                 : new EdgeSpec<> (s.to (), s.from (), s.label (), w));
+    }
+    
+    MultiDiGraph<Integer,String> a = new MultiDiGraph<Integer,String> ();
+    MultiDiGraph<Integer,String> b = new MultiDiGraph<Integer,String> ();
+    a.bulk_load (specs.stream ());
+    b.set (1, 2, "existing");
+    b.track_predecessors (true);
+    b.parallel_load (specs.stream ());
+    b.remove (1, 2, "existing");
+    check_same (a, b);
+    for (Integer n : b)
+      assertTrue (b.edge_indegree (n) == b.in_edges (n).size ());
+    
+    MultiGraph<Integer,String> ua = new MultiGraph<Integer,String> ();
+    MultiGraph<Integer,String> ub = new MultiGraph<Integer,String> ();
+    ua.bulk_load (specs.stream ());
+    ub.parallel_load (specs.stream ());
+    check_same (ua, ub);
+    for (Integer n : ub)
+      for (Edge<Integer,String> e : ub.edges (n))
+        assertTrue (ub.edge (e.to (), e.from (), e.label ()).weight ()
+                    == e.weight ());
+  }
 }
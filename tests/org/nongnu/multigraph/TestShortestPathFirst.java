@@ -0,0 +1,501 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nongnu.multigraph.layout.AbstractPositionableNode;
+import org.nongnu.multigraph.layout.Vector2D;
+
+public class TestShortestPathFirst {
+  Graph<Integer,String> g = new MultiDiGraph<Integer,String> ();
+  Random r = new Random (1);
+  final int nodes = 40;
+  
+  @Before
+  public void setUp () throws Exception {
+    for (int i = 0; i < nodes * 3; i++)
+      link (i);
+  }
+  
+  private void link (int i) {
+    int from = r.nextInt (nodes);
+    int to = r.nextInt (nodes);
+    g.set (from, to, ("Edge" + i + "-" + from + "-" + to).intern (),
+           1 + r.nextInt (4));
+  }
+  
+  /* The incremental SPF must agree with a freshly run SPF on the whole
+   * tree of equal-cost paths to every node.
+   */
+  private void check (ShortestPathFirst<Integer,String> inc) {
+    ShortestPathFirst<Integer,String> spf
+      = new ShortestPathFirst<Integer,String> (g);
+    spf.run (inc.root ());
+    
+    for (Integer n : g)
+      assertTrue ("SPF trees must match for " + n,
+                  spf.edges (n) == null
+                  ? inc.edges (n) == null
+                  : spf.edges (n).equals (inc.edges (n)));
+  }
+  
+  @Test
+  public void testIncremental () {
+    ShortestPathFirst<Integer,String> inc
+      = new ShortestPathFirst<Integer,String> (g).incremental (true);
+    inc.run (0);
+    check (inc);
+    
+    for (int i = nodes * 3; i < nodes * 10; i++) {
+      switch (r.nextInt (4)) {
+        case 0:
+          link (i);
+          break;
+        case 1: {
+          Integer n = r.nextInt (nodes);
+          List<Edge<Integer,String>> edges
+            = new ArrayList<Edge<Integer,String>> (g.edges (n));
+          if (edges.isEmpty ())
+            break;
+          Edge<Integer,String> e = edges.get (r.nextInt (edges.size ()));
+          g.remove (e.from (), e.to (), e.label ());
+          break;
+        }
+        case 2:
+          g.remove (r.nextInt (nodes), r.nextInt (nodes));
+          break;
+        case 3: {
+          Integer n = r.nextInt (nodes);
+          for (Edge<Integer,String> e : g.edges (n))
+            g.set (e.from (), e.to (), e.label (), 1 + r.nextInt (4));
+          break;
+        }
+      }
+      check (inc);
+    }
+    
+    g.clear_all_edges ();
+    check (inc);
+    inc.incremental (false);
+    assertTrue (g.edge_events ().countObservers () == 0);
+  }
+  
+  /* Labels need not be unique: a label already in the tree may be set on
+   * an edge between another pair of nodes, and be re-used after removal.
+   */
+  @Test
+  public void testIncrementalSharedLabel () {
+    g = new MultiDiGraph<Integer,String> ();
+    g.set (0, 1, "link");
+    g.set (1, 2, "link");
+    
+    ShortestPathFirst<Integer,String> inc
+      = new ShortestPathFirst<Integer,String> (g).incremental (true);
+    inc.run (0);
+    check (inc);
+    
+    g.set (0, 3, "link", 1);
+    check (inc);
+    assertTrue (inc.edges (3) != null);
+    
+    g.set (2, 4, "link", 1);
+    check (inc);
+    
+    g.remove (1, 2, "link");
+    check (inc);
+    g.set (3, 2, "link", 2);
+    check (inc);
+    assertTrue (inc.edges (2) != null);
+    
+    inc.incremental (false);
+  }
+  
+  @Test
+  public void testWorkspace () {
+    ShortestPathFirst<Integer,String> ws
+      = new ShortestPathFirst<Integer,String> (g).workspace (true);
+    ShortestPathFirst<Integer,String> radix
+      = new ShortestPathFirst<Integer,String> (g).radix_queue (true);
+    
+    /* no run yet, so no tree */
+    assertTrue (ws.path (0) == null && ws.edges (0) == null);
+    
+    for (int i = 0; i < 3; i++) {
+      ws.radix_queue (i == 1);
+      for (Integer root : g) {
+        ws.run (root);
+        check (ws);
+        assertTrue (ws.edges () != null);
+        radix.run (root);
+        check (radix);
+      }
+      /* grow the graph, so the workspace must grow with it */
+      for (int j = 0; j < nodes; j++)
+        g.set (nodes * (i + 1) + j, r.nextInt (nodes * (i + 1)),
+               ("Grow" + i + "-" + j).intern (), 1 + r.nextInt (4));
+    }
+    ws.run (-1);
+    assertTrue (ws.edges () == null && ws.path (0) == null);
+    
+    /* edges into a removed node linger, and have no id to follow */
+    Integer gone = g.iterator ().next ();
+    g.set (0, gone, "IntoGone");
+    g.remove (gone);
+    for (Integer root : g) {
+      ws.run (root);
+      check (ws);
+      assertTrue (ws.path (gone) == null);
+    }
+  }
+  
+  private void check_bounded (boolean workspace) {
+    ShortestPathFirst<Integer,String> spf
+      = new ShortestPathFirst<Integer,String> (g);
+    ShortestPathFirst<Integer,String> b
+      = new ShortestPathFirst<Integer,String> (g).workspace (workspace);
+    
+    for (Integer root : g) {
+      spf.run (root);
+      
+      /* within a cost, the trees must match */
+      b.max_cost (4).run (root);
+      for (Integer n : g) {
+        List<Edge<Integer,String>> path = spf.path (n);
+        
+        if (path != null && cost (path) <= 4)
+          assertTrue (spf.edges (n).equals (b.edges (n)));
+        else if (!n.equals (root))
+          assertTrue (b.edges (n) == null);
+      }
+      
+      /* one hop: the neighbours of the root, by their direct edges */
+      b.max_cost (Integer.MAX_VALUE).max_hops (1).run (root);
+      for (Integer n : g) {
+        List<Edge<Integer,String>> path = b.path (n);
+        
+        assertTrue (n.equals (root)
+                    || (path != null) == g.successors (root).contains (n));
+        assertTrue (path == null || path.size () == 1);
+      }
+      
+      /* the trees must match up to the most costly target */
+      Integer t1 = r.nextInt (nodes), t2 = r.nextInt (nodes);
+      int max = 0;
+      b.max_hops (Integer.MAX_VALUE).run (root, Arrays.asList (t1, t2));
+      for (Integer t : Arrays.asList (t1, t2))
+        if (spf.path (t) != null)
+          max = Math.max (max, cost (spf.path (t)));
+        else if (!t.equals (root))
+          max = Integer.MAX_VALUE;
+      for (Integer n : g) {
+        List<Edge<Integer,String>> path = spf.path (n);
+        
+        if (n.equals (t1) || n.equals (t2)
+            || (path != null && cost (path) < max))
+          assertTrue (spf.edges (n) == null
+                      ? b.edges (n) == null
+                      : spf.edges (n).equals (b.edges (n)));
+        if (b.path (n) != null)
+          assertTrue (cost (b.path (n)) <= max);
+      }
+    }
+  }
+  
+  @Test
+  public void testBounded () {
+    check_bounded (false);
+    check_bounded (true);
+  }
+  
+  /* The least cost to each node within the given hops of the root, by
+   * brute force over the walks of each length.
+   */
+  private Map<Integer,Integer> hop_costs (Integer root, int hops) {
+    Map<Integer,Integer> best = new HashMap<> ();
+    Map<Integer,Integer> cur = new HashMap<> ();
+    
+    cur.put (root, 0);
+    for (int k = 0; k < hops; k++) {
+      Map<Integer,Integer> next = new HashMap<> ();
+      
+      for (Map.Entry<Integer,Integer> c : cur.entrySet ())
+        for (Edge<Integer,String> e : g.edges (c.getKey ()))
+          next.merge (e.to (), c.getValue () + e.weight (), Math::min);
+      for (Map.Entry<Integer,Integer> n : next.entrySet ())
+        best.merge (n.getKey (), n.getValue (), Math::min);
+      cur = next;
+    }
+    best.remove (root);
+    return best;
+  }
+  
+  @Test
+  public void testHopBound () {
+    /* 3 is 2 hops away by 0-2-3, though the least costly path to 2 is
+     * 0-1-2, and so the tree within 2 hops is not a tree of nodes.
+     */
+    Graph<Integer,String> h = new MultiDiGraph<Integer,String> ();
+    h.set (0, 1, "0-1", 1);
+    h.set (1, 2, "1-2", 1);
+    h.set (0, 2, "0-2", 5);
+    h.set (2, 3, "2-3", 1);
+    
+    for (boolean ws : new boolean [] { false, true }) {
+      ShortestPathFirst<Integer,String> spf
+        = new ShortestPathFirst<Integer,String> (h).workspace (ws);
+      
+      spf.max_hops (2).run (0);
+      assertTrue (spf.path (3) != null && cost (spf.path (3)) == 6);
+      assertTrue (spf.edges (3).equals (
+                    new HashSet<> (Arrays.asList (h.edge (0, 2),
+                                                  h.edge (2, 3)))));
+      assertTrue (spf.path (2).size () == 2 && cost (spf.path (2)) == 2);
+      assertTrue (spf.nexthop (3).equals (2));
+      assertTrue (spf.nexthops (3).equals (Collections.singleton (2)));
+      assertTrue (spf.nexthops (2).equals (Collections.singleton (1)));
+      assertTrue (spf.edges ().size () == 4);
+      
+      spf.max_hops (1).run (0);
+      assertTrue (spf.path (3) == null && spf.path (2).size () == 1);
+      assertTrue (spf.edges ().size () == 2);
+    }
+    
+    /* every node within the bound, by its least costly path within it */
+    for (int hops = 0; hops < 10; hops++) {
+      ShortestPathFirst<Integer,String> spf
+        = new ShortestPathFirst<Integer,String> (g)
+            .workspace (hops % 2 == 1).max_hops (hops);
+      
+      for (Integer root : g) {
+        Map<Integer,Integer> best = hop_costs (root, hops);
+        
+        spf.run (root);
+        for (Integer n : g) {
+          List<Edge<Integer,String>> path = spf.path (n);
+          
+          if (n.equals (root))
+            continue;
+          assertTrue ((path != null) == best.containsKey (n));
+          if (path == null)
+            continue;
+          
+          path = new ArrayList<> (path);
+          Collections.reverse (path);
+          assertTrue (path.size () <= hops);
+          assertTrue (cost (path, root, n) == best.get (n));
+        }
+        check_nexthops (spf);
+      }
+    }
+  }
+  
+  /* The ECMP next-hops must be the first hops of all the paths */
+  private void check_nexthops (ShortestPathFirst<Integer,String> spf) {
+    for (Integer n : g) {
+      Set<Edge<Integer,String>> edges = spf.edges (n);
+      Set<Integer> nhs = spf.nexthops (n);
+      BitSet bits = spf.nexthop_bits (n);
+      
+      if (edges == null) {
+        assertTrue (nhs == null && bits == null);
+        continue;
+      }
+      
+      Set<Integer> first = new HashSet<Integer> ();
+      for (Edge<Integer,String> e : edges)
+        if (e.from ().equals (spf.root ()))
+          first.add (e.to ());
+      assertTrue (first.equals (nhs));
+      assertTrue (bits.cardinality () == nhs.size ());
+      for (int i = bits.nextSetBit (0); i >= 0; i = bits.nextSetBit (i + 1))
+        assertTrue (nhs.contains (spf.nexthop_nodes ().get (i)));
+    }
+  }
+  
+  @Test
+  public void testNexthops () {
+    ShortestPathFirst<Integer,String> spf
+      = new ShortestPathFirst<Integer,String> (g);
+    ShortestPathFirst<Integer,String> ws
+      = new ShortestPathFirst<Integer,String> (g).workspace (true);
+    ShortestPathFirst<Integer,String> inc
+      = new ShortestPathFirst<Integer,String> (g).incremental (true);
+    
+    for (Integer root : g) {
+      spf.run (root);
+      check_nexthops (spf);
+      ws.run (root);
+      check_nexthops (ws);
+    }
+    
+    inc.run (0);
+    for (int i = 0; i < nodes; i++) {
+      link (nodes * 3 + i);
+      check_nexthops (inc);
+    }
+  }
+  
+  private static <N,E> int cost (List<Edge<N,E>> path, N from, N to) {
+    int cost = 0;
+    N n = from;
+    
+    for (Edge<N,E> e : path) {
+      assertTrue (e.from ().equals (n));
+      n = e.to ();
+      cost += e.weight ();
+    }
+    assertTrue (n.equals (to));
+    return cost;
+  }
+  
+  /* Point-to-point paths must cost the same as paths in the full tree */
+  private <N,E> void check_p2p (Graph<N,E> g, boolean astar) {
+    ShortestPathFirst<N,E> spf = new ShortestPathFirst<N,E> (g);
+    ShortestPathFirst<N,E> p2p = new ShortestPathFirst<N,E> (g);
+    List<N> nodes = new ArrayList<N> (g);
+    double scale = astar ? p2p.astar_scale () : 0;
+    
+    for (int i = 0; i < 200; i++) {
+      N from = nodes.get (r.nextInt (nodes.size ()));
+      N to = nodes.get (r.nextInt (nodes.size ()));
+      List<Edge<N,E>> path = astar ? p2p.astar_path (from, to, scale)
+                                   : p2p.path (from, to);
+      
+      spf.run (from);
+      if (from.equals (to))
+        assertTrue (path.isEmpty ());
+      else if (spf.path (to) == null)
+        assertTrue (path == null);
+      else
+        assertTrue (cost (path, from, to) == cost (spf.path (to)));
+    }
+  }
+  
+  private static <N,E> int cost (List<Edge<N,E>> path) {
+    int cost = 0;
+    for (Edge<N,E> e : path)
+      cost += e.weight ();
+    return cost;
+  }
+  
+  static class place extends AbstractPositionableNode {
+    final int id;
+    place (int id, double x, double y) {
+      this.id = id;
+      setPosition (new Vector2D (x, y));
+    }
+    @Override
+    public String toString () {
+      return "place" + id;
+    }
+  }
+  
+  @Test
+  public void testPointToPoint () {
+    check_p2p (g, false);
+    ((MultiDiGraph<Integer,String>) g).track_predecessors (true);
+    check_p2p (g, false);
+    
+    /* an undirected, geometric graph, with weights of at least the length */
+    Graph<place,Integer> ug = new MultiGraph<place,Integer> ();
+    List<place> places = new ArrayList<place> ();
+    for (int i = 0; i < 200; i++)
+      places.add (new place (i, r.nextDouble () * 100, r.nextDouble () * 100));
+    for (int i = 0; i < 600; i++) {
+      place a = places.get (r.nextInt (places.size ()));
+      place b = places.get (r.nextInt (places.size ()));
+      int len = (int) Math.ceil (a.getPosition ().distance (b.getPosition ()));
+      ug.set (a, b, i, Math.max (1, len + r.nextInt (10)));
+    }
+    check_p2p (ug, false);
+    check_p2p (ug, true);
+  }
+  
+  /* A* keys must saturate, not overflow, for far nodes with costly
+   * edges, even with an admissible scale.
+   */
+  @Test
+  public void testAstarFar () {
+    Graph<place,Integer> fg = new MultiDiGraph<place,Integer> ();
+    place a = new place (0, 0, 0);
+    place b = new place (1, 3e9, 0);
+    place c = new place (2, 1, 0);
+    
+    fg.set (a, b, 0, 1500000000);
+    fg.set (a, c, 1, 5);
+    
+    for (boolean radix : new boolean [] { false, true }) {
+      ShortestPathFirst<place,Integer> spf
+        = new ShortestPathFirst<place,Integer> (fg).radix_queue (radix);
+      double scale = spf.astar_scale ();
+      
+      assertTrue (scale == 0.5);
+      assertTrue (cost (spf.astar_path (a, c, scale), a, c) == 5);
+      assertTrue (spf.astar_path (a, b, scale).size () == 1);
+    }
+  }
+  
+  @Test
+  public void testAllPairs () {
+    AllPairsShortestPathFirst<Integer,String> apsp
+      = new AllPairsShortestPathFirst<Integer,String> (g);
+    apsp.run ();
+    
+    for (Integer from : g) {
+      ShortestPathFirst<Integer,String> spf
+        = new ShortestPathFirst<Integer,String> (g);
+      spf.run (from);
+      
+      for (Integer to : g) {
+        Set<Edge<Integer,String>> edges = spf.edges (to);
+        Integer nh = apsp.nexthop (from, to);
+        
+        if (from.equals (to) || edges == null) {
+          assertTrue (nh == null);
+          continue;
+        }
+        
+        int cost = 0;
+        for (Edge<Integer,String> e : spf.path (to))
+          cost += e.weight ();
+        assertTrue (apsp.distance (from, to) == cost);
+        
+        /* the next-hop must be the first hop of one of the paths */
+        boolean found = false;
+        for (Edge<Integer,String> e : edges)
+          if (e.from ().equals (from) && e.to ().equals (nh))
+            found = true;
+        assertTrue (found);
+      }
+    }
+  }
+}
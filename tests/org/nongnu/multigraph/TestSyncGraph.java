@@ -0,0 +1,190 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSyncGraph {
+  MultiDiGraph<String,String> mg = new MultiDiGraph<String,String> ();
+  Graph<String,String> g = new SyncGraph<String,String> (mg);
+
+  @Before
+  public void setUp () {
+    for (int i = 2; i < 20; i++) {
+      String n1 = ("Node" + (i - 1)).intern ();
+      String n2 = ("Node" + i).intern ();
+      g.set (n1, n2, ("Edge" + (i - 1) + "-" + i).intern (), i);
+      if (i % 3 == 0)
+        g.set (n1, n2, ("Extra" + i).intern ());
+    }
+  }
+
+  @Test
+  public void testQueries () {
+    assertTrue (g.is_directed () == mg.is_directed ());
+    assertTrue (g.is_simple () == mg.is_simple ());
+    assertTrue (g.size () == mg.size ());
+    assertTrue (g.link_count () == mg.link_count ());
+    assertTrue (g.max_nodal_degree () == mg.max_nodal_degree ());
+    assertTrue (g.avg_nodal_degree () == mg.avg_nodal_degree ());
+    assertTrue (g.equals (mg) && g.hashCode () == mg.hashCode ());
+    assertTrue (g.containsAll (mg));
+
+    for (String n : mg) {
+      assertTrue (g.contains (n));
+      assertTrue (g.edge_outdegree (n) == mg.edge_outdegree (n));
+      assertTrue (g.nodal_outdegree (n) == mg.nodal_outdegree (n));
+      assertTrue (g.successors (n).equals (mg.successors (n)));
+      assertTrue (g.edges (n).equals (mg.edges (n)));
+      assertTrue (g.stream (n).count () == mg.edge_outdegree (n));
+
+      for (Edge<String,String> e : mg.edges (n)) {
+        assertTrue (g.edge (e.from (), e.to (), e.label ()) == e);
+        assertTrue (g.is_linked (e.from (), e.to ()));
+        assertTrue (g.edges (e.from (), e.to ())
+                     .containsAll (mg.edges (e.from (), e.to ())));
+      }
+    }
+    assertTrue (g.edges ("Node40") == null);
+    assertTrue (g.successors ("Node40") == null);
+
+    /* and modifications are passed on */
+    g.set ("Node40", "Node1", "back");
+    assertTrue (mg.edge ("Node40", "Node1", "back") != null);
+    assertTrue (g.remove ("Node40", "Node1", "back"));
+    assertTrue (mg.edge ("Node40", "Node1") == null);
+    assertTrue (g.remove ((Object) "Node40"));
+    assertTrue (!mg.contains ("Node40"));
+  }
+
+  @Test
+  public void testSnapshots () {
+    Set<String> succ = g.successors ("Node1");
+    Set<Edge<String,String>> edges = g.edges ("Node1");
+    Collection<Edge<String,String>> between = g.edges ("Node1", "Node2");
+    Iterator<String> it = g.iterator ();
+    int size = g.size ();
+
+    g.set ("Node1", "Node5", "new");
+    g.set ("Node1", "Node2", "new2");
+    g.add ("Node40");
+
+    assertTrue (succ.size () == 1);
+    assertTrue (edges.size () == 1);
+    assertTrue (between.size () == 1);
+    assertTrue (g.edges ("Node1").size () == 3);
+
+    /* iterating the old snapshot after writes does not throw */
+    int seen = 0;
+    while (it.hasNext ()) {
+      assertTrue (!it.next ().equals ("Node40"));
+      seen++;
+    }
+    assertTrue (seen == size);
+  }
+
+  @Test(expected=UnsupportedOperationException.class)
+  public void testSnapshotReadOnly () {
+    g.edges ("Node1").clear ();
+  }
+
+  @Test
+  public void testIteratorRemove () {
+    int size = g.size ();
+
+    for (Iterator<String> it = g.iterator (); it.hasNext ();)
+      if (it.next ().equals ("Node5"))
+        it.remove ();
+
+    assertTrue (g.size () == size - 1);
+    assertTrue (!mg.contains ("Node5"));
+    assertTrue (!g.is_linked ("Node5", "Node6"));
+  }
+
+  @Test(expected=IllegalStateException.class)
+  public void testIteratorRemoveTwice () {
+    Iterator<String> it = g.iterator ();
+    it.next ();
+    it.remove ();
+    it.remove ();
+  }
+
+  /* Readers walk the graph while a writer grows and shrinks it. Readers
+   * must never see an inconsistent edge set, nor trip over the writer.
+   */
+  @Test
+  public void testConcurrentReaders () throws InterruptedException {
+    final int READERS = 4;
+    final AtomicReference<Throwable> fail = new AtomicReference<> ();
+    final Thread [] readers = new Thread [READERS];
+    final AtomicBoolean done = new AtomicBoolean ();
+
+    Thread writer = new Thread (() -> {
+      for (int i = 0; i < 2000; i++) {
+        String n = ("W" + (i % 50)).intern ();
+        g.set (n, "Node1", "w" + i);
+        if (i % 3 == 0)
+          g.remove (n, "Node1");
+        if (i % 7 == 0)
+          g.remove ((Object) n);
+      }
+    });
+
+    for (int t = 0; t < READERS; t++) {
+      readers[t] = new Thread (() -> {
+        try {
+          while (!done.get ()) {
+            for (String n : g) {
+              Set<Edge<String,String>> es = g.edges (n);
+              if (es == null)
+                continue;
+              for (Edge<String,String> e : es)
+                assertTrue (e.from () == n);
+            }
+            assertTrue (g.link_count () >= 0);
+          }
+        } catch (Throwable e) {
+          fail.compareAndSet (null, e);
+        }
+      });
+      readers[t].start ();
+    }
+
+    writer.start ();
+    writer.join ();
+    done.set (true);
+    for (Thread t : readers)
+      t.join ();
+
+    assertTrue (String.valueOf (fail.get ()), fail.get () == null);
+
+    long edges = 0;
+    for (String n : g)
+      edges += g.edge_outdegree (n);
+    assertTrue (edges == g.link_count ());
+  }
+}
@@ -0,0 +1,276 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph.metrics;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nongnu.multigraph.Edge;
+import org.nongnu.multigraph.Graph;
+import org.nongnu.multigraph.MultiDiGraph;
+import org.nongnu.multigraph.MultiGraph;
+import org.nongnu.multigraph.SyncGraph;
+
+public class TestTraversalMetrics {
+  Graph<Integer,String> g = new MultiDiGraph<Integer,String> ();
+  final int nodes = 150;
+  
+  @Before
+  public void setUp () throws Exception {
+    Random r = new Random (1);
+    
+    for (int i = 0; i < nodes * 3; i++) {
+      int from = r.nextInt (nodes);
+      int to = r.nextInt (nodes);
+      g.set (from, to, ("Edge" + i).intern (), 1 + r.nextInt (5));
+    }
+  }
+  
+  @Test
+  public void testFloydWarshalMatrix () {
+    dmap<Integer> dm = TraversalMetrics.FloydWarshal (g);
+    dmatrix<Integer> seq = TraversalMetrics.FloydWarshalMatrix (g, false);
+    dmatrix<Integer> par = TraversalMetrics.FloydWarshalMatrix (g, true);
+    
+    for (Integer i : g)
+      for (Integer j : g) {
+        assertTrue (seq.dist (i, j) == dm.dist (i, j));
+        assertTrue (par.dist (i, j) == dm.dist (i, j));
+      }
+    
+    Map<String,Double> s1 = TraversalMetrics.stats (dm, g);
+    Map<String,Double> s2 = TraversalMetrics.stats (seq, g);
+    for (String k : s1.keySet ())
+      assertTrue (k, Math.abs (s1.get (k) - s2.get (k)) < 1e-6);
+  }
+  
+  @Test
+  public void testDmaps () {
+    dmatrix<Integer> dense = TraversalMetrics.FloydWarshalMatrix (g);
+    sparse_dmap<Integer> sparse = new sparse_dmap<Integer> ();
+    
+    for (Integer i : g)
+      for (Integer j : g)
+        sparse.set (i, j, dense.dist (i, j));
+    
+    Map<String,Double> s1 = TraversalMetrics.stats (dense, g);
+    assertTrue (dense.compact ());
+    Map<String,Double> s2 = TraversalMetrics.stats (dense, g);
+    Map<String,Double> s3 = TraversalMetrics.stats (sparse, g);
+    
+    for (String k : s1.keySet ()) {
+      assertTrue (k, Math.abs (s1.get (k) - s2.get (k)) < 1e-6);
+      assertTrue (k, Math.abs (s1.get (k) - s3.get (k)) < 1e-6);
+    }
+    for (Integer i : g)
+      for (Integer j : g)
+        assertTrue (sparse.dist (i, j) == dense.dist (i, j));
+    
+    /* too big for 16 bits, must widen */
+    dmatrix<Integer> m = new dmatrix<Integer> (g);
+    m.set (0, 1, 5);
+    assertTrue (m.compact ());
+    m.set (1, 0, 70000);
+    assertTrue (!m.compacted ());
+    assertTrue (m.dist (0, 1) == 5 && m.dist (1, 0) == 70000);
+    assertTrue (m.dist (1, 2) == Integer.MAX_VALUE);
+    
+    /* a row large enough to need more than 16 bits of hash, which
+     * would otherwise crowd into the bottom of the table and crawl.
+     */
+    sparse_dmap<Integer> big = new sparse_dmap<Integer> ();
+    for (int i = 1; i <= 200000; i++)
+      big.set (0, i, i);
+    for (int i = 1; i <= 200000; i += 997)
+      assertTrue (big.dist (0, i) == i);
+    assertTrue (big.dist (0, 200001) == Integer.MAX_VALUE);
+  }
+  
+  @Test
+  public void testMappedDmap () throws Exception {
+    File f = File.createTempFile ("dmap", ".bin");
+    f.deleteOnExit ();
+    
+    dmatrix<Integer> dense = TraversalMetrics.FloydWarshalMatrix (g);
+    try (mapped_dmap<Integer> mapped = new mapped_dmap<Integer> (g, f.toPath ())) {
+      mapped.fill ();
+      
+      for (Integer i : g)
+        for (Integer j : g)
+          assertTrue (mapped.dist (i, j) == dense.dist (i, j));
+      
+      Map<String,Double> s1 = TraversalMetrics.stats (dense, g);
+      Map<String,Double> s2 = TraversalMetrics.stats (mapped, g);
+      for (String k : s1.keySet ())
+        assertTrue (k, Math.abs (s1.get (k) - s2.get (k)) < 1e-6);
+    }
+  }
+  
+  @Test
+  public void testStatsSpf () {
+    dmatrix<Integer> dense = TraversalMetrics.FloydWarshalMatrix (g);
+    Map<String,Double> s1 = TraversalMetrics.stats (dense, g);
+    Map<String,Double> s2 = TraversalMetrics.stats_spf (g);
+    
+    for (String k : s1.keySet ())
+      assertTrue (k, Math.abs (s1.get (k) - s2.get (k)) < 1e-6);
+    
+    /* check the mean and stddev, directly */
+    double sum = 0, sum2 = 0;
+    long num = 0;
+    for (Integer i : g)
+      for (Integer j : g) {
+        int w = dense.dist (i, j);
+        if (w == 0 || w == Integer.MAX_VALUE)
+          continue;
+        sum += w;
+        num++;
+      }
+    double avg = sum / num;
+    for (Integer i : g)
+      for (Integer j : g) {
+        int w = dense.dist (i, j);
+        if (w == 0 || w == Integer.MAX_VALUE)
+          continue;
+        sum2 += (w - avg) * (w - avg);
+      }
+    assertTrue (Math.abs (s2.get ("avg") - avg) < 1e-6);
+    assertTrue (Math.abs (s2.get ("stddev")
+                          - Math.sqrt (sum2 / (num - 1))) < 1e-6);
+  }
+  
+  @Test
+  public void testApproximations () {
+    Map<String,Double> exact = TraversalMetrics.stats (g);
+    Map<String,Double> b = TraversalMetrics.diameter_bounds (g, 10);
+    
+    assertTrue (b.get ("diameter_lower") <= exact.get ("diameter"));
+    assertTrue (b.get ("radius_upper") >= exact.get ("radius"));
+    
+    /* sampling every node is exact */
+    Map<String,Double> all = TraversalMetrics.sampled_stats (g, nodes,
+                                                             new Random (2));
+    assertTrue (Math.abs (all.get ("avg") - exact.get ("avg")) < 1e-6);
+    assertTrue (all.get ("avg_ci95") < 1e-6);
+    assertTrue (all.get ("diameter_lower").equals (exact.get ("diameter")));
+    
+    Map<String,Double> some = TraversalMetrics.sampled_stats (g, 40,
+                                                              new Random (2));
+    assertTrue (some.get ("avg_ci95") > 0);
+    assertTrue (Math.abs (some.get ("avg") - exact.get ("avg"))
+                <= 2 * some.get ("avg_ci95"));
+    
+    /* the neighbourhood function is by hops, whatever the weights */
+    g.set (0, nodes, "Far", 1 << 30);
+    Graph<Integer,String> hops = new MultiDiGraph<Integer,String> ();
+    for (Integer n : g)
+      for (Edge<Integer,String> e : g.edges (n))
+        hops.set (e.from (), e.to (), e.label (), 1);
+    
+    dmatrix<Integer> dense = TraversalMetrics.FloydWarshalMatrix (hops);
+    neighbourhood_function nf
+      = TraversalMetrics.sampled_neighbourhood (g, g.size (), new Random (2));
+    for (int t = 0; t <= nf.max_distance (); t++) {
+      int count = 0;
+      for (Integer i : g)
+        for (Integer j : g)
+          if (dense.dist (i, j) <= t)
+            count++;
+      assertTrue (Math.abs (nf.pairs (t) - count) < 1e-6);
+    }
+    assertTrue (nf.max_distance () == TraversalMetrics.stats (hops)
+                                        .get ("diameter"));
+    assertTrue (Math.abs (nf.average_distance ()
+                          - TraversalMetrics.stats (hops).get ("avg")) < 1e-6);
+    
+    /* a connected, undirected graph: iFUB bounds must meet */
+    Graph<Integer,String> ug = new MultiGraph<Integer,String> ();
+    Random r = new Random (3);
+    for (int i = 0; i < nodes; i++)
+      ug.set (i, (i + 1) % nodes, ("Ring" + i).intern (), 1 + r.nextInt (5));
+    for (int i = 0; i < nodes / 4; i++)
+      ug.set (r.nextInt (nodes), r.nextInt (nodes), ("Chord" + i).intern (),
+              1 + r.nextInt (5));
+    exact = TraversalMetrics.stats (ug);
+    b = TraversalMetrics.diameter_bounds (ug, nodes);
+    assertTrue (b.get ("diameter_lower").equals (exact.get ("diameter")));
+    assertTrue (b.get ("diameter_upper").equals (exact.get ("diameter")));
+    b = TraversalMetrics.diameter_bounds (ug, 4);
+    assertTrue (b.get ("diameter_lower") <= exact.get ("diameter"));
+    assertTrue (b.get ("diameter_upper") >= exact.get ("diameter"));
+  }
+  
+  @Test
+  public void testHyperANF () {
+    /* HyperANF counts hops, compare with the exact function of the graph
+     * with unit weights.
+     */
+    Graph<Integer,String> hops = new MultiDiGraph<Integer,String> ();
+    for (Integer n : g)
+      for (Edge<Integer,String> e : g.edges (n))
+        hops.set (e.from (), e.to (), e.label (), 1);
+    
+    neighbourhood_function exact
+      = TraversalMetrics.sampled_neighbourhood (hops, nodes, new Random (1));
+    HyperANF<Integer,String> anf
+      = new HyperANF<Integer,String> (hops).log2m (10);
+    neighbourhood_function nf = anf.run ();
+    
+    /* the counters may stop changing before the last few distant pairs
+     * are counted
+     */
+    assertTrue (nf.max_distance () <= exact.max_distance ());
+    assertTrue (anf.iterations () == nf.max_distance ());
+    for (int t = 0; t <= exact.max_distance (); t++)
+      assertTrue (Math.abs (nf.pairs (t) - exact.pairs (t))
+                  <= 3 * nf.error (t));
+    assertTrue (Math.abs (nf.average_distance () - exact.average_distance ())
+                < 0.1 * exact.average_distance ());
+    assertTrue (nf.effective_diameter (0.9) > 0);
+    
+    /* bounded iterations */
+    nf = new HyperANF<Integer,String> (hops).max_iterations (2).run ();
+    assertTrue (nf.max_distance () == 2);
+  }
+  
+  @Test
+  public void testParallelTraversors () {
+    /* wrapped, so the degree histogram of MultiDiGraph is not used */
+    Graph<Integer,String> sg = new SyncGraph<Integer,String> (g);
+    int [] degrees = TraversalMetrics.degree_distribution (sg);
+    int [] edegrees = TraversalMetrics.edge_degree_distribution (sg);
+    
+    assertTrue (Arrays.equals (degrees,
+                               TraversalMetrics.degree_distribution (g)));
+    
+    int [] expect = new int [edegrees.length];
+    for (Integer n : g)
+      expect[g.edge_outdegree (n)]++;
+    assertTrue (Arrays.equals (expect, edegrees));
+    
+    TraversalMetrics.node_test<Integer> even = n -> n % 2 == 0;
+    assertTrue (TraversalMetrics.parallel_count (sg, even)
+                == TraversalMetrics.count (g, even));
+  }
+}
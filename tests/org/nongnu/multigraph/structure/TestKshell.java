@@ -0,0 +1,112 @@
+/* This file is part of 'MultiGraph'
+ *
+ * Copyright (C) 2026 Paul Jakma
+ *
+ * MultiGraph is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the
+ * Free Software Foundation; either version 3, or (at your option) any
+ * later version.
+ *
+ * MultiGraph is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MultiGraph.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.nongnu.multigraph.structure;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nongnu.multigraph.Graph;
+import org.nongnu.multigraph.MultiGraph;
+
+public class TestKshell {
+  static class node implements kshell_node {
+    final int id;
+    final kshell_node_data d = new kshell_node_data ();
+    
+    node (int id) {
+      this.id = id;
+    }
+    
+    @Override
+    public kshell_node_data gkc () {
+      return d;
+    }
+    
+    @Override
+    public String toString () {
+      return "n" + id;
+    }
+  }
+  
+  Graph<node,String> g = new MultiGraph<node,String> ();
+  
+  @Before
+  public void setUp () throws Exception {
+    Random r = new Random (1);
+    node [] nodes = new node [200];
+    
+    for (int i = 0; i < nodes.length; i++)
+      g.add (nodes[i] = new node (i));
+    
+    /* a denser core, with a sparser periphery */
+    for (int i = 0; i < 1200; i++) {
+      int bound = i % 2 == 0 ? 30 : nodes.length;
+      g.set (nodes[r.nextInt (bound)], nodes[r.nextInt (nodes.length)],
+             "e" + i);
+    }
+  }
+  
+  /* The k-core by definition: the nodes left after repeatedly removing
+   * any with fewer than k neighbours left.
+   */
+  private Set<node> core (int k) {
+    Set<node> core = new HashSet<node> (g);
+    boolean removed;
+    
+    do {
+      removed = false;
+      for (node n : new HashSet<node> (core)) {
+        int d = 0;
+        for (node s : g.successors (n))
+          if (core.contains (s))
+            d++;
+        if (d < k) {
+          core.remove (n);
+          removed = true;
+        }
+      }
+    } while (removed);
+    
+    return core;
+  }
+  
+  @Test
+  public void testCores () {
+    Map<node,Integer> cores = kshell.cores (g);
+    Map<node,Integer> pcores = kshell.parallel_cores (g);
+    int max = kshell.calc (g);
+    
+    assertTrue (cores.equals (pcores));
+    
+    for (int k = 0; k <= max + 1; k++) {
+      Set<node> core = core (k);
+      
+      assertTrue (k <= max || core.isEmpty ());
+      for (node n : g) {
+        assertTrue (core.contains (n) == (cores.get (n) >= k));
+        assertTrue (n.gkc ().k == cores.get (n));
+      }
+    }
+  }
+}